@@ -0,0 +1,110 @@
+package com.jul.NASapis.benchmarks;
+
+import com.jul.NASapis.json.ModelReaders;
+import com.jul.NASapis.models.APODModel;
+import com.jul.NASapis.models.EONETModel;
+import com.jul.NASapis.models.NEOWSModel;
+import kong.unirest.JsonNode;
+import kong.unirest.json.JSONArray;
+import kong.unirest.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of NASA responses to our models: the streaming {@link ModelReaders} against the Unirest
+ * {@link JsonNode} tree walks the controller used to do, field by field through {@code getJSONObject(i)}.
+ * Both sides start from the response bytes, as they come off the wire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmarks {
+    byte[] apod;
+    byte[] neoFeed;
+    byte[] eonetEvents;
+
+    @Setup
+    public void load() {
+        apod = Fixtures.load("apod-list.json");
+        neoFeed = Fixtures.load("neo-feed-7d.json");
+        eonetEvents = Fixtures.load("eonet-events.json");
+    }
+
+    @Benchmark
+    public List<APODModel> apodStreaming() {
+        return ModelReaders.apod(apod);
+    }
+
+    @Benchmark
+    public List<APODModel> apodJsonNode() {
+        JSONArray array = new JsonNode(new String(apod, StandardCharsets.UTF_8)).getArray();
+        List<APODModel> list = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            String date = array.getJSONObject(i).getString("date");
+            String explanation = array.getJSONObject(i).getString("explanation");
+            String hdurl = array.getJSONObject(i).getString("hdurl");
+            String title = array.getJSONObject(i).getString("title");
+            String url = array.getJSONObject(i).getString("url");
+            list.add(new APODModel(date, explanation, hdurl, title, url));
+        }
+        return list;
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<NEOWSModel>> neoFeedStreaming() {
+        return ModelReaders.neoFeed(neoFeed);
+    }
+
+    @Benchmark
+    public Map<LocalDate, List<NEOWSModel>> neoFeedJsonNode() {
+        JSONObject nearEarthObjects = new JsonNode(new String(neoFeed, StandardCharsets.UTF_8)).getObject()
+                .getJSONObject("near_earth_objects");
+        Map<LocalDate, List<NEOWSModel>> days = new TreeMap<>();
+        for (String day : nearEarthObjects.keySet()) {
+            JSONArray date = nearEarthObjects.getJSONArray(day);
+            List<NEOWSModel> list = new ArrayList<>();
+            for (int j = 0; j < date.length(); j++) {
+                int neoRefId = date.getJSONObject(j).getInt("neo_reference_id");
+                String name = date.getJSONObject(j).getString("name");
+                String nasaJplUrl = date.getJSONObject(j).getString("nasa_jpl_url");
+                boolean isDangerous = date.getJSONObject(j).getBoolean("is_potentially_hazardous_asteroid");
+                list.add(new NEOWSModel(neoRefId, name, nasaJplUrl, isDangerous));
+            }
+            days.put(LocalDate.parse(day), list);
+        }
+        return days;
+    }
+
+    /** Also maps categories, sources and every geometry, which the tree walk below never did. */
+    @Benchmark
+    public List<EONETModel> eonetStreaming() {
+        return ModelReaders.eonetEvents(eonetEvents);
+    }
+
+    @Benchmark
+    public List<EONETModel> eonetJsonNode() {
+        JSONArray response = new JsonNode(new String(eonetEvents, StandardCharsets.UTF_8)).getObject().getJSONArray("events");
+        List<EONETModel> list = new ArrayList<>();
+        for (int i = 0; i < response.length(); i++) {
+            String id = response.getJSONObject(i).getString("id");
+            String title = response.getJSONObject(i).getString("title");
+            String url = "";
+            JSONArray sources = response.getJSONObject(i).getJSONArray("sources");
+            for (int j = 0; j < sources.length(); j++) {
+                url = sources.getJSONObject(j).getString("url");
+            }
+            list.add(new EONETModel(id, title, url));
+        }
+        return list;
+    }
+}
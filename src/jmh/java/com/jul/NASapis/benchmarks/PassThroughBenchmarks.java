@@ -0,0 +1,59 @@
+package com.jul.NASapis.benchmarks;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.jul.NASapis.json.JsonStreams;
+import kong.unirest.JsonNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Responses relayed as they are (DONKI, EPIC): re-encoding through {@link JsonStreams} the way
+ * {@code JsonBodyConverter} does, against parsing into a {@link JsonNode} and calling {@code toPrettyString()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PassThroughBenchmarks {
+    @Param({"donki-cmeanalysis.json", "epic-natural-all.json"})
+    String fixture;
+
+    byte[] source;
+
+    @Setup
+    public void load() {
+        source = Fixtures.load(fixture);
+    }
+
+    @Benchmark
+    public String streamingPretty() throws IOException {
+        return copy(true);
+    }
+
+    @Benchmark
+    public String streamingCompact() throws IOException {
+        return copy(false);
+    }
+
+    @Benchmark
+    public String jsonNodePretty() {
+        return new JsonNode(new String(source, StandardCharsets.UTF_8)).toPrettyString();
+    }
+
+    private String copy(boolean pretty) throws IOException {
+        StringWriter out = new StringWriter(source.length);
+        try (JsonReader in = JsonStreams.reader(source)) {
+            JsonWriter writer = JsonStreams.writer(out, pretty);
+            JsonStreams.copy(in, writer);
+            writer.flush();
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.jul.NASapis.benchmarks;
+
+import com.jul.NASapis.json.JsonStreams;
+import com.jul.NASapis.json.RecordQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code fields=} and {@code filter=} on DONKI CMEAnalysis and EPIC image listings, against re-encoding the
+ * whole listing minified, which is what the same request costs without them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordQueryBenchmarks {
+    @Param({"donki-cmeanalysis.json", "epic-natural-images.json"})
+    String fixture;
+
+    byte[] source;
+    RecordQuery query;
+
+    @Setup
+    public void load() {
+        source = Fixtures.load(fixture);
+        query = fixture.startsWith("donki")
+                ? RecordQuery.parse(new String[]{"time21_5", "speed", "type"}, new String[]{"speed>800"})
+                : RecordQuery.parse(new String[]{"image", "centroid_coordinates.lat", "centroid_coordinates.lon"},
+                        new String[]{"centroid_coordinates.lon>0"});
+    }
+
+    @Benchmark
+    public byte[] projectedAndFiltered() {
+        return query.apply(source);
+    }
+
+    @Benchmark
+    public byte[] wholeListingCompact() {
+        return JsonStreams.reencode(source, false);
+    }
+}
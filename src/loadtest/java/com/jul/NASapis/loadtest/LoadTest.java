@@ -0,0 +1,234 @@
+package com.jul.NASapis.loadtest;
+
+import com.jul.NASapis.NASApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Drives the real endpoints at a fixed rate, against the application started in this JVM with its upstreams
+ * pointed at a {@link StandInServer}, and reports per scenario the throughput, latency percentiles, status
+ * counts and the bytes the application allocated per request.
+ * Requests are sent on schedule whether or not earlier ones have answered, and latency is measured from the
+ * moment a request was due, so a stalled server shows up in the percentiles instead of lowering the rate.
+ * <p>
+ * {@code mvn -Ploadtest verify -Dloadtest.args="--qps 200 --duration 30 apod epic-all"}; options are
+ * {@code --qps}, {@code --duration} and {@code --warmup} (seconds), {@code --target URL} to drive an application
+ * that is already running instead (no allocation figures then), and the {@code standin.*} system properties of
+ * {@link StandInServer.Faults} for injected latency, errors and 429s.
+ */
+public class LoadTest {
+    private static final Map<String, IntFunction<String>> SCENARIOS = new LinkedHashMap<>();
+
+    static {
+        LocalDate origin = LocalDate.of(2020, 1, 1);
+        SCENARIOS.put("apod", i -> "/api/nasa/planetary/apod?date=" + origin.plusDays(i % 365));
+        SCENARIOS.put("neo-feed", i -> "/api/nasa/neo/feed?start_date=" + origin.plusDays(i % 365)
+                + "&end_date=" + origin.plusDays(i % 365 + 6));
+        SCENARIOS.put("donki-cme-analysis", i -> "/api/nasa/DONKI/CMEAnalysis?start_date=" + origin.plusMonths(i % 12)
+                + "&end_date=" + origin.plusMonths(i % 12 + 1));
+        SCENARIOS.put("donki-cme-fields", i -> "/api/nasa/DONKI/CMEAnalysis?start_date=" + origin.plusMonths(i % 12)
+                + "&end_date=" + origin.plusMonths(i % 12 + 1) + "&fields=time21_5,speed,type&filter=speed%3E800");
+        SCENARIOS.put("epic-all", i -> "/api/nasa/EPIC/natural/all");
+        SCENARIOS.put("epic-date", i -> "/api/nasa/EPIC/natural/" + origin.plusDays(i % 365));
+        SCENARIOS.put("eonet", i -> "/api/nasa/EONET?status=all&limit=50");
+        SCENARIOS.put("earth-assets", i -> "/api/nasa/planetary/earth/assets?latitude=" + (i % 90)
+                + "&longitude=" + (i % 180) + "&date=2021-01-01");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int qps = 100;
+        int duration = 20;
+        int warmup = 5;
+        String target = null;
+        List<String> scenarios = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--qps": qps = Integer.parseInt(args[++i]); break;
+                case "--duration": duration = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--target": target = args[++i]; break;
+                default:
+                    if (!SCENARIOS.containsKey(args[i])) {
+                        throw new IllegalArgumentException("Unknown scenario " + args[i] + ", pick from " + SCENARIOS.keySet());
+                    }
+                    scenarios.add(args[i]);
+            }
+        }
+        if (scenarios.isEmpty()) {
+            scenarios.addAll(SCENARIOS.keySet());
+        }
+
+        StandInServer.Faults faults = StandInServer.Faults.fromSystemProperties();
+        try (StandInServer standIn = target == null ? new StandInServer(0, faults) : null;
+             ConfigurableApplicationContext application = target == null ? start(standIn) : null) {
+            String base = target != null ? target
+                    : "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+            System.out.printf("Driving %s at %d requests/s for %d s per scenario (after %d s of warmup)%s%n",
+                    base, qps, duration, warmup, target == null ? ", stand-in " + faults : "");
+            System.out.printf("%-20s %8s %8s %8s %8s %8s %8s %7s %6s %6s %6s %10s%n", "scenario", "requests",
+                    "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "2xx", "4xx", "5xx", "err", "alloc/req");
+            try (Driver driver = new Driver(base)) {
+                for (String scenario : scenarios) {
+                    driver.run(SCENARIOS.get(scenario), qps, warmup);
+                    Result result = driver.run(SCENARIOS.get(scenario), qps, duration);
+                    result.print(scenario, target == null);
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(StandInServer standIn) throws Exception {
+        Map<String, Object> properties = new HashMap<>(standIn.properties());
+        properties.put("server.port", 0);
+        properties.put("nasa.api.key", "LOADTEST-1");
+        properties.put("nasa.api.keys", "LOADTEST-2,LOADTEST-3,LOADTEST-4");
+        properties.put("nasa.api.cache-directory", Files.createTempDirectory("nasapis-loadtest").toString());
+        properties.put("logging.level.root", "WARN");
+        return new SpringApplicationBuilder(NASApplication.class)
+                .properties(properties)
+                .logStartupInfo(false)
+                .run();
+    }
+
+    /** Open-loop request generator; its threads are left out of the allocation figures. */
+    private static class Driver implements AutoCloseable {
+        final String base;
+        final ExecutorService callbacks = Executors.newFixedThreadPool(4, named("loadtest-client"));
+        final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(named("loadtest-ticker"));
+        final HttpClient client;
+
+        Driver(String base) {
+            this.base = base;
+            this.client = HttpClient.newBuilder()
+                    .executor(callbacks)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+        }
+
+        Result run(IntFunction<String> paths, int qps, int seconds) throws InterruptedException {
+            int total = qps * seconds;
+            long period = TimeUnit.SECONDS.toNanos(1) / qps;
+            Result result = new Result(total);
+            AtomicInteger sent = new AtomicInteger();
+            AtomicInteger done = new AtomicInteger();
+            long allocatedBefore = allocated();
+            long started = System.nanoTime();
+
+            ScheduledFuture<?> ticks = ticker.scheduleAtFixedRate(() -> {
+                int i = sent.getAndIncrement();
+                if (i >= total) {
+                    return;
+                }
+                long due = started + i * period;
+                HttpRequest request = HttpRequest.newBuilder(URI.create(base + paths.apply(i)))
+                        .timeout(Duration.ofSeconds(30))
+                        .build();
+                client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    result.record(System.nanoTime() - due, error == null ? response.statusCode() : 0);
+                    done.incrementAndGet();
+                });
+            }, 0, period, TimeUnit.NANOSECONDS);
+
+            long deadline = started + TimeUnit.SECONDS.toNanos(seconds + 35);
+            while (done.get() < total && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            ticks.cancel(false);
+            result.elapsedNanos = System.nanoTime() - started;
+            result.allocated = allocated() - allocatedBefore;
+            return result;
+        }
+
+        @Override
+        public void close() {
+            ticker.shutdownNow();
+            callbacks.shutdownNow();
+        }
+    }
+
+    /** Bytes allocated so far by the live threads of this JVM, other than the load generator and the stand-in. */
+    private static long allocated() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<Long, String> names = new HashMap<>();
+        Thread.getAllStackTraces().keySet().forEach(thread -> names.put(thread.getId(), thread.getName()));
+        long[] ids = names.entrySet().stream()
+                .filter(entry -> !entry.getValue().startsWith("loadtest-") && !entry.getValue().startsWith("standin-")
+                        && !entry.getValue().startsWith("HttpClient-"))
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+        return Arrays.stream(threads.getThreadAllocatedBytes(ids)).filter(bytes -> bytes > 0).sum();
+    }
+
+    private static java.util.concurrent.ThreadFactory named(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Latencies and status counts of one scenario run. */
+    private static class Result {
+        final long[] latencies;
+        final AtomicInteger recorded = new AtomicInteger();
+        final AtomicLong[] statuses = {new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong()};
+        long elapsedNanos;
+        long allocated;
+
+        Result(int capacity) {
+            this.latencies = new long[capacity];
+        }
+
+        /** {@code status} 0 means the call failed without an answer. */
+        void record(long nanos, int status) {
+            int i = recorded.getAndIncrement();
+            if (i < latencies.length) {
+                latencies[i] = nanos;
+            }
+            statuses[status >= 500 ? 2 : status >= 400 ? 1 : status >= 200 ? 0 : 3].incrementAndGet();
+        }
+
+        void print(String scenario, boolean withAllocation) {
+            int count = Math.min(recorded.get(), latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("%-20s %8d %8.1f %8.1f %8.1f %8.1f %8.1f %7d %6d %6d %6d %10s%n", scenario, count,
+                    count / (elapsedNanos / 1e9), millis(sorted, 0.5), millis(sorted, 0.9), millis(sorted, 0.99),
+                    millis(sorted, 1), statuses[0].get(), statuses[1].get(), statuses[2].get(), statuses[3].get(),
+                    withAllocation && count > 0 ? (allocated / count / 1024) + " KB" : "-");
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.jul.NASapis.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for api.nasa.gov, epic.gsfc.nasa.gov and eonet.sci.gsfc.nasa.gov, answering from the
+ * recorded fixtures under {@code src/test/resources/fixtures}. Each host is served under its own path
+ * prefix, for example {@code http://localhost:8089/api.nasa.gov/planetary/apod}; {@link #properties()}
+ * lists the {@code nasa.api.upstream} settings that point the application at it.
+ * Dated APOD and NeoWs answers are rebuilt from the fixtures for the requested dates, so caches keyed by
+ * date behave as they would against NASA. Latency, 5xx errors and 429 quota answers are injected as
+ * configured by {@link Faults}.
+ * <p>
+ * To run it on its own: {@code mvn -Ploadtest test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.jul.NASapis.loadtest.StandInServer -Dexec.args=8089}
+ */
+public class StandInServer implements AutoCloseable {
+    static final String[] HOSTS = {"api.nasa.gov", "epic.gsfc.nasa.gov", "eonet.sci.gsfc.nasa.gov"};
+    static final long HOURLY_LIMIT = 10_000_000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Faults faults;
+    private final Map<String, byte[]> fixtures = new HashMap<>();
+    private final JsonArray apod;
+    private final JsonObject neoFeed;
+    private final byte[] image;
+    private final AtomicLong remaining = new AtomicLong(HOURLY_LIMIT);
+
+    public StandInServer(int port, Faults faults) throws IOException {
+        this.faults = faults;
+        for (String name : new String[]{"apod-list.json", "neo-feed-7d.json", "eonet-events.json",
+                "donki-cmeanalysis.json", "epic-natural-all.json", "epic-natural-images.json"}) {
+            fixtures.put(name, fixture(name));
+        }
+        this.apod = JsonParser.parseString(text("apod-list.json")).getAsJsonArray();
+        this.neoFeed = JsonParser.parseString(text("neo-feed-7d.json")).getAsJsonObject();
+        this.image = image();
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "standin-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public String baseUrl(String host) {
+        return "http://localhost:" + port() + "/" + host;
+    }
+
+    /** Settings that send the application's upstream calls here instead of to NASA. */
+    public Map<String, String> properties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("nasa.api.upstream.api", baseUrl(HOSTS[0]));
+        properties.put("nasa.api.upstream.epic", baseUrl(HOSTS[1]));
+        properties.put("nasa.api.upstream.eonet", baseUrl(HOSTS[2]));
+        properties.put("nasa.api.rate-limit.hourly-limit", String.valueOf(HOURLY_LIMIT));
+        return properties;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            int slash = path.indexOf('/', 1);
+            String host = slash < 0 ? path.substring(1) : path.substring(1, slash);
+            String rest = slash < 0 ? "/" : path.substring(slash);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+
+            long delay = faults.latencyMillis + (faults.jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(faults.jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (HOSTS[0].equals(host)) {
+                exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(HOURLY_LIMIT));
+                exchange.getResponseHeaders().set("X-RateLimit-Remaining",
+                        String.valueOf(Math.max(0, remaining.decrementAndGet())));
+                if (ThreadLocalRandom.current().nextDouble() < faults.throttleRate) {
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(faults.retryAfterSeconds));
+                    send(exchange, 429, "application/json", ("{\"error\":{\"code\":\"OVER_RATE_LIMIT\",\"message\":"
+                            + "\"You have exceeded your rate limit. Try again later.\"}}").getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            if (ThreadLocalRandom.current().nextDouble() < faults.errorRate) {
+                send(exchange, 503, "text/html", "<html><body>Service Unavailable</body></html>".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            byte[] body = answer(host, rest, query);
+            if (body == null) {
+                send(exchange, 404, "application/json", "{\"error\":\"not found\"}".getBytes(StandardCharsets.UTF_8));
+            } else if (body == image) {
+                send(exchange, 200, rest.endsWith(".jpg") ? "image/jpeg" : "image/png", body);
+            } else {
+                send(exchange, 200, "application/json", body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, 500, "text/plain", e.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] answer(String host, String path, Map<String, String> query) {
+        switch (host) {
+            case "api.nasa.gov":
+                if (path.equals("/planetary/apod")) {
+                    return apod(query);
+                }
+                if (path.equals("/neo/rest/v1/feed")) {
+                    return neoFeed(query);
+                }
+                if (path.startsWith("/neo/rest/v1/neo/browse")) {
+                    return browse();
+                }
+                if (path.equals("/DONKI/CMEAnalysis")) {
+                    return fixtures.get("donki-cmeanalysis.json");
+                }
+                if (path.startsWith("/DONKI/")) {
+                    return "[]".getBytes(StandardCharsets.UTF_8);
+                }
+                if (path.equals("/planetary/earth/assets")) {
+                    return assets(query);
+                }
+                return path.startsWith("/planetary/earth/imagery") ? image : null;
+            case "epic.gsfc.nasa.gov":
+                if (path.startsWith("/archive/")) {
+                    return image;
+                }
+                if (path.endsWith("/all")) {
+                    return fixtures.get("epic-natural-all.json");
+                }
+                if (path.endsWith("/available")) {
+                    return available();
+                }
+                return path.startsWith("/api/") ? fixtures.get("epic-natural-images.json") : null;
+            case "eonet.sci.gsfc.nasa.gov":
+                return path.startsWith("/api/v3/events") ? fixtures.get("eonet-events.json") : null;
+            default:
+                return null;
+        }
+    }
+
+    /** A single picture for {@code date} (today by default), or {@code count} of them. */
+    private byte[] apod(Map<String, String> query) {
+        if (query.containsKey("count")) {
+            JsonArray list = new JsonArray();
+            int count = Integer.parseInt(query.get("count"));
+            for (int i = 0; i < count; i++) {
+                list.add(apod.get(ThreadLocalRandom.current().nextInt(apod.size())));
+            }
+            return bytes(list);
+        }
+        String date = query.getOrDefault("date", LocalDate.now().toString());
+        JsonObject entry = apod.get(Math.floorMod(date.hashCode(), apod.size())).getAsJsonObject().deepCopy();
+        entry.addProperty("date", date);
+        return bytes(entry);
+    }
+
+    /** The fixture's days, cycled over the requested range. */
+    private byte[] neoFeed(Map<String, String> query) {
+        LocalDate start = LocalDate.parse(query.getOrDefault("start_date", LocalDate.now().toString()));
+        LocalDate end = query.containsKey("end_date") ? LocalDate.parse(query.get("end_date")) : start.plusDays(7);
+        JsonElement[] days = neoFeed.getAsJsonObject("near_earth_objects").entrySet().stream()
+                .map(Map.Entry::getValue).toArray(JsonElement[]::new);
+        JsonObject nearEarthObjects = new JsonObject();
+        int count = 0;
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            JsonElement objects = days[(int) Math.floorMod(day.toEpochDay(), days.length)];
+            nearEarthObjects.add(day.toString(), objects);
+            count += objects.getAsJsonArray().size();
+        }
+        JsonObject feed = new JsonObject();
+        feed.add("links", neoFeed.get("links"));
+        feed.addProperty("element_count", count);
+        feed.add("near_earth_objects", nearEarthObjects);
+        return bytes(feed);
+    }
+
+    private byte[] browse() {
+        JsonArray objects = new JsonArray();
+        neoFeed.getAsJsonObject("near_earth_objects").entrySet()
+                .forEach(day -> day.getValue().getAsJsonArray().forEach(objects::add));
+        JsonObject page = new JsonObject();
+        page.addProperty("size", objects.size());
+        page.addProperty("total_elements", objects.size());
+        page.addProperty("total_pages", 1);
+        page.addProperty("number", 0);
+        JsonObject browse = new JsonObject();
+        browse.add("links", new JsonObject());
+        browse.add("page", page);
+        browse.add("near_earth_objects", objects);
+        return bytes(browse);
+    }
+
+    private byte[] assets(Map<String, String> query) {
+        JsonObject resource = new JsonObject();
+        resource.addProperty("dataset", "LANDSAT/LC08/C01/T1_SR");
+        resource.addProperty("planet", "earth");
+        JsonObject assets = new JsonObject();
+        assets.addProperty("date", query.getOrDefault("date", LocalDate.now().toString()) + "T03:12:39.000000");
+        assets.addProperty("id", "LANDSAT/LC08/C01/T1_SR/LC08_127059_20140201");
+        assets.add("resource", resource);
+        assets.addProperty("service_version", "v5");
+        assets.addProperty("url", "https://earthengine.googleapis.com/v1alpha/projects/earthengine-legacy/thumbnails/standin:getPixels");
+        return bytes(assets);
+    }
+
+    private byte[] available() {
+        JsonArray dates = new JsonArray();
+        JsonParser.parseString(text("epic-natural-all.json")).getAsJsonArray()
+                .forEach(entry -> dates.add(entry.getAsJsonObject().get("date")));
+        return bytes(dates);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null) {
+            return query;
+        }
+        for (String param : raw.split("&")) {
+            int equals = param.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(param.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(param.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static byte[] bytes(JsonElement json) {
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String text(String name) {
+        return new String(fixtures.get(name), StandardCharsets.UTF_8);
+    }
+
+    static byte[] fixture(String name) {
+        try (InputStream in = StandInServer.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No fixture " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A small gradient standing in for EPIC and Landsat imagery. */
+    private static byte[] image() {
+        BufferedImage picture = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 256; x++) {
+            for (int y = 0; y < 256; y++) {
+                picture.setRGB(x, y, (x << 16) | (y << 8) | 0x40);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(picture, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /** Injected faults, read from {@code standin.*} system properties by {@link #fromSystemProperties()}. */
+    public static class Faults {
+        long latencyMillis;
+        long jitterMillis;
+        double errorRate;
+        double throttleRate;
+        int retryAfterSeconds = 1;
+
+        public static Faults fromSystemProperties() {
+            Faults faults = new Faults();
+            faults.latencyMillis = Long.getLong("standin.latency", 0);
+            faults.jitterMillis = Long.getLong("standin.jitter", 0);
+            faults.errorRate = Double.parseDouble(System.getProperty("standin.errorRate", "0"));
+            faults.throttleRate = Double.parseDouble(System.getProperty("standin.throttleRate", "0"));
+            faults.retryAfterSeconds = Integer.getInteger("standin.retryAfter", 1);
+            return faults;
+        }
+
+        @Override
+        public String toString() {
+            return "latency " + latencyMillis + " ms (+" + jitterMillis + " ms jitter), error rate " + errorRate
+                    + ", 429 rate " + throttleRate;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        Faults faults = Faults.fromSystemProperties();
+        StandInServer server = new StandInServer(port, faults);
+        System.out.println("NASA stand-in listening on port " + server.port() + ", " + faults);
+        server.properties().forEach((name, value) -> System.out.println(name + "=" + value));
+    }
+}
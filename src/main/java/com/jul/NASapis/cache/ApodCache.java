@@ -0,0 +1,112 @@
+package com.jul.NASapis.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.models.APODModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * APOD entries for past dates never change, so they are kept in memory for as long as the LRU allows
+ * and written to disk to survive restarts. Today's (or an undated) entry is only held for a short TTL.
+ */
+@Slf4j
+@Component
+public class ApodCache {
+    private static final Gson GSON = new Gson();
+    private static final Type LIST_TYPE = new TypeToken<List<APODModel>>(){}.getType();
+
+    private final LruCache<String, List<APODModel>> memory;
+    private final Duration todayTtl;
+    private final Path directory;
+
+    public ApodCache(ApplicationPropertiesConfig config, MeterRegistry registry) {
+        ApplicationPropertiesConfig.Apod apod = config.getApod();
+        this.memory = new LruCache<String, List<APODModel>>(apod.getCacheSize()).monitor(registry, "apod");
+        this.todayTtl = apod.getTodayTtl();
+        this.directory = config.getCacheDirectory().resolve("apod");
+    }
+
+    public List<APODModel> get(String date, boolean conceptTags, boolean thumbs) {
+        String key = key(date, conceptTags, thumbs);
+        List<APODModel> list = memory.get(key);
+        if (list == null && isPast(date)) {
+            list = read(key);
+            if (list != null) {
+                memory.put(key, list);
+            }
+        }
+        return list;
+    }
+
+    public void put(String date, boolean conceptTags, boolean thumbs, List<APODModel> list) {
+        String key = key(date, conceptTags, thumbs);
+        if (isPast(date)) {
+            memory.put(key, list);
+            write(key, list);
+        } else {
+            memory.put(key, list, todayTtl);
+        }
+    }
+
+    /** How long anything derived from the APOD of {@code date} may be kept: past dates forever (null). */
+    public Duration ttl(String date) {
+        return isPast(date) ? null : todayTtl;
+    }
+
+    private static String key(String date, boolean conceptTags, boolean thumbs) {
+        return (date == null ? "today" : date) + "_" + conceptTags + "_" + thumbs;
+    }
+
+    private static boolean isPast(String date) {
+        if (date == null) {
+            return false;
+        }
+        try {
+            return LocalDate.parse(date).isBefore(LocalDate.now());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private List<APODModel> read(String key) {
+        Path file = directory.resolve(key + ".json");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return GSON.fromJson(reader, LIST_TYPE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read cached APOD {}", file, e);
+            return null;
+        }
+    }
+
+    private void write(String key, List<APODModel> list) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(list, LIST_TYPE, writer);
+            }
+            Files.move(tmp, directory.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist APOD {}", key, e);
+        }
+    }
+}
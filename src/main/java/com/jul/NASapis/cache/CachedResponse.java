@@ -0,0 +1,22 @@
+package com.jul.NASapis.cache;
+
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+/** Upstream body as it was last fetched, with a strong ETag derived from its bytes. */
+@Getter
+public class CachedResponse {
+    private final byte[] body;
+    private final String etag;
+    private final long fetchedAt;
+
+    public CachedResponse(byte[] body) {
+        this.body = body;
+        this.etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        this.fetchedAt = System.currentTimeMillis();
+    }
+
+    public long ageMillis() {
+        return System.currentTimeMillis() - fetchedAt;
+    }
+}
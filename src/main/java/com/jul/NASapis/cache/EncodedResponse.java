@@ -0,0 +1,70 @@
+package com.jul.NASapis.cache;
+
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A final response body, encoded once and kept outside the heap both as is and gzipped, with a strong ETag
+ * derived from its bytes. As the work is done once per body, it is compressed at the highest level.
+ */
+@Getter
+public class EncodedResponse {
+    private final ByteBuffer identity;
+    /** Null when gzip would not make the body smaller. */
+    private final ByteBuffer gzip;
+    private final String etag;
+
+    private EncodedResponse(ByteBuffer identity, ByteBuffer gzip, String etag) {
+        this.identity = identity;
+        this.gzip = gzip;
+        this.etag = etag;
+    }
+
+    public static EncodedResponse encode(byte[] body) {
+        byte[] gzipped = gzip(body);
+        return new EncodedResponse(direct(body), gzipped.length < body.length ? direct(gzipped) : null,
+                "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    }
+
+    /** Off-heap bytes held by both encodings. */
+    public int size() {
+        return identity.capacity() + (gzip == null ? 0 : gzip.capacity());
+    }
+
+    /** A heap copy of the body as is. */
+    public byte[] bytes() {
+        byte[] bytes = new byte[identity.capacity()];
+        identity.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /** Writes one of the encodings; the buffers themselves are shared between threads and never moved. */
+    public static void write(ByteBuffer encoding, OutputStream out) throws IOException {
+        Channels.newChannel(out).write(encoding.duplicate());
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+}
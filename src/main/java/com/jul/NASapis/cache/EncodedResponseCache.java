@@ -0,0 +1,46 @@
+package com.jul.NASapis.cache;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Final response bodies of the hot JSON routes, serialized and compressed once per cache key instead of on every
+ * request. Bodies larger than {@code max-entry-size} are encoded for the one request and not kept, so the
+ * off-heap memory held stays below {@code max-entries} times that.
+ */
+@Component
+public class EncodedResponseCache {
+    private final LruCache<String, EncodedResponse> entries;
+    private final boolean enabled;
+    private final long maxEntrySize;
+
+    public EncodedResponseCache(ApplicationPropertiesConfig config, MeterRegistry registry) {
+        ApplicationPropertiesConfig.ResponseCache settings = config.getResponseCache();
+        this.entries = new LruCache<String, EncodedResponse>(settings.getMaxEntries()).monitor(registry, "responses");
+        this.enabled = settings.isEnabled();
+        this.maxEntrySize = settings.getMaxEntrySize().toBytes();
+    }
+
+    public EncodedResponse get(String key) {
+        return enabled ? entries.get(key) : null;
+    }
+
+    /** Encodes {@code body} and keeps it for at most {@code ttl}; a null ttl keeps it until it is evicted. */
+    public EncodedResponse put(String key, byte[] body, Duration ttl) {
+        EncodedResponse encoded = EncodedResponse.encode(body);
+        if (enabled && encoded.size() <= maxEntrySize) {
+            entries.put(key, encoded, ttl);
+        }
+        return encoded;
+    }
+
+    /** The entry for {@code key}, serializing it with {@code body} when there is none. */
+    public EncodedResponse get(String key, Duration ttl, Supplier<byte[]> body) {
+        EncodedResponse encoded = get(key);
+        return encoded != null ? encoded : put(key, body.get(), ttl);
+    }
+}
@@ -0,0 +1,228 @@
+package com.jul.NASapis.cache;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Size bounded on-disk store for immutable upstream images (EPIC archive frames, past Earth imagery).
+ * Files are named after a digest of the cache key and evicted least recently used first.
+ * A file only becomes visible after it was completely written to a temp file and atomically renamed,
+ * so a crash can at worst leave a stray temp file, which is removed on the next start.
+ */
+@Slf4j
+@Component
+public class ImageDiskCache {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ImageDiskCache(ApplicationPropertiesConfig config, MeterRegistry registry) throws IOException {
+        this.directory = config.getCacheDirectory().resolve("images");
+        this.maxBytes = config.getImageCache().getMaxSize().toBytes();
+        Files.createDirectories(directory);
+        load();
+
+        this.hits = Counter.builder("nasa.cache.requests").description("Cache lookups")
+                .tags("cache", "images", "result", "hit").register(registry);
+        this.misses = Counter.builder("nasa.cache.requests").description("Cache lookups")
+                .tags("cache", "images", "result", "miss").register(registry);
+        Gauge.builder("nasa.cache.bytes", this, ImageDiskCache::totalBytes)
+                .description("Disk space used by cached images")
+                .baseUnit("bytes")
+                .tag("cache", "images")
+                .register(registry);
+    }
+
+    /** The cached file for {@code key}, or null. */
+    public synchronized Path get(String key) {
+        String name = digest(key);
+        Entry entry = files.get(name);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (!Files.exists(entry.file)) {
+            files.remove(name);
+            totalBytes -= entry.size;
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.file;
+    }
+
+    private synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /** Starts writing {@code key}; nothing is visible to {@link #get} until {@link Fill#commit()}. */
+    public Fill begin(String key, String extension) {
+        try {
+            String name = digest(key);
+            Path tmp = Files.createTempFile(directory, name, TEMP_SUFFIX);
+            return new Fill(name, extension, tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String extension(String contentType) {
+        if (contentType == null) {
+            return "bin";
+        }
+        if (contentType.startsWith("image/png")) {
+            return "png";
+        }
+        if (contentType.startsWith("image/jpeg")) {
+            return "jpg";
+        }
+        return "bin";
+    }
+
+    public static String contentType(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".jpg")) {
+            return "image/jpeg";
+        }
+        return "application/octet-stream";
+    }
+
+    private synchronized void add(String name, Path file, long size) {
+        Entry previous = files.put(name, new Entry(file, size));
+        if (previous != null) {
+            totalBytes -= previous.size;
+            if (!previous.file.equals(file)) {
+                delete(previous.file);
+            }
+        }
+        totalBytes += size;
+        Iterator<Entry> eldest = files.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            totalBytes -= evicted.size;
+            delete(evicted.file);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not evict cached image {}", file, e);
+        }
+    }
+
+    /** Rebuilds the index from disk, oldest files first so they are the first to be evicted. */
+    private void load() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.sorted(Comparator.comparing(ImageDiskCache::lastModified)).forEach(file -> {
+                String name = file.getFileName().toString();
+                try {
+                    if (!Files.isRegularFile(file) || name.lastIndexOf('.') <= 0) {
+                        log.warn("Ignoring {} in the image cache directory, it is no cached image", file);
+                    } else if (name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else {
+                        add(name.substring(0, name.lastIndexOf('.')), file, Files.size(file));
+                    }
+                } catch (IOException e) {
+                    log.warn("Skipping cached image {}", file, e);
+                }
+            });
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String digest(String key) {
+        return DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Entry {
+        final Path file;
+        final long size;
+
+        Entry(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /** An image being written to the cache. */
+    public class Fill extends FilterOutputStream {
+        private final String name;
+        private final String extension;
+        private final Path tmp;
+        private long size;
+        private boolean done;
+
+        private Fill(String name, String extension, Path tmp) throws IOException {
+            super(new BufferedOutputStream(Files.newOutputStream(tmp)));
+            this.name = name;
+            this.extension = extension;
+            this.tmp = tmp;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            size += len;
+        }
+
+        public void commit() throws IOException {
+            close();
+            Path file = directory.resolve(name + "." + extension);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+            add(name, file, size);
+        }
+
+        /** Drops the temp file unless the image was committed. */
+        public void abort() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                close();
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.warn("Could not remove partial image {}", tmp, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.jul.NASapis.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small bounded least-recently-used map whose entries may optionally expire.
+ * All operations are synchronized; entries are cheap references so the critical sections stay short.
+ */
+public class LruCache<K, V> {
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long hits;
+    private long misses;
+
+    public LruCache(int maxEntries) {
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Publishes hit and miss counts as {@code nasa.cache.requests} and the entry count as {@code nasa.cache.size},
+     * tagged with {@code name}.
+     */
+    public LruCache<K, V> monitor(MeterRegistry registry, String name) {
+        FunctionCounter.builder("nasa.cache.requests", this, cache -> cache.count(true))
+                .description("Cache lookups")
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("nasa.cache.requests", this, cache -> cache.count(false))
+                .description("Cache lookups")
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+        Gauge.builder("nasa.cache.size", this, LruCache::size)
+                .description("Entries held")
+                .tag("cache", name)
+                .register(registry);
+        return this;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.expiresAt != 0 && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /** Keeps the value until it is evicted for space. */
+    public void put(K key, V value) {
+        put(key, value, null);
+    }
+
+    /** Keeps the value for at most {@code ttl}; a null ttl never expires. */
+    public synchronized void put(K key, V value, Duration ttl) {
+        long expiresAt = ttl == null ? 0 : System.currentTimeMillis() + ttl.toMillis();
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized long count(boolean hit) {
+        return hit ? hits : misses;
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
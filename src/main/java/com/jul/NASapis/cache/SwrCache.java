@@ -0,0 +1,88 @@
+package com.jul.NASapis.cache;
+
+import com.jul.NASapis.services.UpstreamException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Stale-while-revalidate response cache.
+ * Entries younger than {@code freshFor} are served as they are. Older entries are still served immediately for
+ * another {@code staleFor}, while a single background load replaces them; a failed refresh keeps the old entry.
+ * Only once an entry is older than both does the caller wait for the upstream; should that call fail for any
+ * reason other than a 4xx answer (NASA down, circuit open, budget exhausted), an entry younger than
+ * {@code staleIfError} on top of that is served instead of the error.
+ */
+@Slf4j
+public class SwrCache {
+    private final LruCache<String, CachedResponse> entries;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Duration freshFor;
+    private final Duration staleFor;
+    private final Duration staleIfError;
+
+    public SwrCache(int maxEntries, Duration freshFor, Duration staleFor, Duration staleIfError) {
+        this.entries = new LruCache<>(maxEntries);
+        this.freshFor = freshFor;
+        this.staleFor = staleFor;
+        this.staleIfError = staleIfError;
+    }
+
+    public CompletableFuture<CachedResponse> get(String key, Supplier<CompletableFuture<byte[]>> loader) {
+        CachedResponse cached = entries.get(key);
+        if (cached == null) {
+            return load(key, loader);
+        }
+        if (cached.ageMillis() >= freshFor.plus(staleFor).toMillis()) {
+            return load(key, loader).handle((fetched, error) -> {
+                if (error == null) {
+                    return fetched;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof UpstreamException && ((UpstreamException) cause).getStatus() < 500) {
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+                }
+                log.debug("Loading {} failed, serving the stale entry: {}", key, cause.toString());
+                return cached;
+            });
+        }
+        if (cached.ageMillis() >= freshFor.toMillis() && refreshing.add(key)) {
+            load(key, loader).whenComplete((refreshed, error) -> {
+                refreshing.remove(key);
+                if (error != null) {
+                    log.debug("Refreshing {} failed, serving the stale entry: {}", key, error.toString());
+                }
+            });
+        }
+        return CompletableFuture.completedFuture(cached);
+    }
+
+    /** See {@link LruCache#monitor}. */
+    public SwrCache monitor(MeterRegistry registry, String name) {
+        entries.monitor(registry, name);
+        return this;
+    }
+
+    /** Seconds the entry may still be used without revalidation. */
+    public long remainingFreshSeconds(CachedResponse cached) {
+        return Math.max(0, (freshFor.toMillis() - cached.ageMillis()) / 1000);
+    }
+
+    public Duration getStaleFor() {
+        return staleFor;
+    }
+
+    private CompletableFuture<CachedResponse> load(String key, Supplier<CompletableFuture<byte[]>> loader) {
+        return loader.get().thenApply(body -> {
+            CachedResponse fetched = new CachedResponse(body);
+            entries.put(key, fetched, freshFor.plus(staleFor).plus(staleIfError));
+            return fetched;
+        });
+    }
+}
@@ -1,10 +1,22 @@
 package com.jul.NASapis.config;
 
+import com.jul.NASapis.services.Priority;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Configuration
 @ConfigurationProperties(prefix = "nasa.api")
@@ -13,4 +25,182 @@ import org.springframework.stereotype.Component;
 @Component
 public class ApplicationPropertiesConfig {
     private String key;
+    private List<String> keys = new ArrayList<>();
+    private Path cacheDirectory = Paths.get(System.getProperty("user.home"), ".nasapis");
+    private Client client = new Client();
+    private Upstream upstream = new Upstream();
+    private Apod apod = new Apod();
+    private RateLimit rateLimit = new RateLimit();
+    private Resilience resilience = new Resilience();
+    private Neo neo = new Neo();
+    private ImageCache imageCache = new ImageCache();
+    private Earth earth = new Earth();
+    private Donki donki = new Donki();
+    private Live live = new Live();
+    private Eonet eonet = new Eonet();
+    private Batch batch = new Batch();
+    private ResponseCache responseCache = new ResponseCache();
+    private Map<String, EndpointPolicy> endpoints = new HashMap<>();
+
+    /** {@code key} and every entry of {@code keys}, without duplicates or blanks. */
+    public Set<String> allKeys() {
+        Set<String> all = new LinkedHashSet<>();
+        if (key != null && !key.isBlank()) {
+            all.add(key.trim());
+        }
+        keys.stream().filter(k -> k != null && !k.isBlank()).map(String::trim).forEach(all::add);
+        return all;
+    }
+
+    /** Connection pool and socket settings shared by every upstream host. */
+    @Getter
+    @Setter
+    public static class Client {
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(30);
+        private Duration keepAlive = Duration.ofMinutes(5);
+        private int maxConnections = 50;
+        private Map<String, Integer> maxConnectionsPerHost = new HashMap<>();
+        private boolean gzip = true;
+        private int streamBufferSize = 16 * 1024;
+    }
+
+    /** Base URLs the NASA hosts are reached at, to run against a stand-in server or a mirror. */
+    @Getter
+    @Setter
+    public static class Upstream {
+        private String api = "https://api.nasa.gov";
+        private String epic = "https://epic.gsfc.nasa.gov";
+        private String eonet = "https://eonet.sci.gsfc.nasa.gov";
+    }
+
+    /** Astronomy Picture of the Day cache. */
+    @Getter
+    @Setter
+    public static class Apod {
+        private int cacheSize = 10000;
+        private Duration todayTtl = Duration.ofMinutes(15);
+    }
+
+    /** Local budget for the api.nasa.gov hourly quota. */
+    @Getter
+    @Setter
+    public static class RateLimit {
+        private int hourlyLimit = 1000;
+        private double lowPriorityReserve = 0.2;
+        private int maxQueued = 500;
+        private Duration maxWait = Duration.ofSeconds(30);
+        private Duration quarantine = Duration.ofHours(1);
+    }
+
+    /** Near Earth Object feed range splitting. */
+    @Getter
+    @Setter
+    public static class Neo {
+        private int parallelChunks = 4;
+        private int maxRangeDays = 366;
+        private int cacheSize = 5000;
+    }
+
+    /** On-disk cache for immutable EPIC archive and Earth images. */
+    @Getter
+    @Setter
+    public static class ImageCache {
+        private boolean enabled = true;
+        private DataSize maxSize = DataSize.ofGigabytes(2);
+    }
+
+    /** Grid used to share Earth imagery and assets between nearby coordinates. */
+    @Getter
+    @Setter
+    public static class Earth {
+        private double gridDegrees = 0.025;
+        private boolean prefetch = false;
+        private int assetsCacheSize = 5000;
+        private Duration assetsTtl = Duration.ofHours(6);
+    }
+
+    /**
+     * Stale-while-revalidate cache in front of the DONKI catalogs, and the local event store that answers
+     * range queries for the catalogs listed in {@code DonkiCatalog}.
+     */
+    @Getter
+    @Setter
+    public static class Donki {
+        private int cacheSize = 2000;
+        private Duration freshFor = Duration.ofMinutes(1);
+        private Duration staleFor = Duration.ofHours(1);
+        private Duration staleIfError = Duration.ofDays(1);
+        private boolean storeEnabled = true;
+        private Duration pollInterval = Duration.ofMinutes(5);
+        private Duration revisionWindow = Duration.ofDays(7);
+        private int syncChunkDays = 90;
+    }
+
+    /** Server-sent event streams of new DONKI notifications and open EONET events. */
+    @Getter
+    @Setter
+    public static class Live {
+        private Duration pollInterval = Duration.ofMinutes(1);
+        private Duration subscriberTimeout = Duration.ofMinutes(30);
+        private int rememberedIds = 10000;
+        private int maxBacklog = 100;
+        private int sendThreads = 8;
+    }
+
+    /** Local EONET snapshot that answers bbox, date, magnitude, category and source queries. */
+    @Getter
+    @Setter
+    public static class Eonet {
+        private boolean snapshotEnabled = true;
+        private int snapshotDays = 365;
+        private Duration refreshInterval = Duration.ofMinutes(10);
+        private double gridDegrees = 1;
+    }
+
+    /** POST /batch, which runs several JSON routes in one request. */
+    @Getter
+    @Setter
+    public static class Batch {
+        private int maxRequests = 25;
+    }
+
+    /** Serialized and gzipped bodies of the hot JSON routes, kept off-heap. */
+    @Getter
+    @Setter
+    public static class ResponseCache {
+        private boolean enabled = true;
+        private int maxEntries = 2000;
+        private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+    }
+
+    /**
+     * Overrides of the cache, priority and concurrency defaults of one endpoint of the {@code EndpointRegistry},
+     * by endpoint ID, e.g. {@code nasa.api.endpoints.epic-natural-all.fresh-for=10m}. Unset settings keep the defaults.
+     */
+    @Getter
+    @Setter
+    public static class EndpointPolicy {
+        private Duration freshFor;
+        private Duration staleFor;
+        private Duration staleIfError;
+        private Integer cacheSize;
+        private Integer maxConcurrent;
+        private Priority priority;
+        private Boolean precompressed;
+    }
+
+    /** Per-host bulkheads, circuit breakers and hedged requests in front of every upstream. */
+    @Getter
+    @Setter
+    public static class Resilience {
+        private int maxConcurrentPerHost = 64;
+        private int breakerWindow = 20;
+        private int breakerMinCalls = 10;
+        private double breakerFailureRate = 0.5;
+        private Duration breakerOpenFor = Duration.ofSeconds(30);
+        private boolean hedgeEnabled = false;
+        private double hedgePercentile = 0.95;
+        private Duration hedgeMinDelay = Duration.ofMillis(50);
+    }
 }
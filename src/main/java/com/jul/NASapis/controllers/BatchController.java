@@ -0,0 +1,221 @@
+package com.jul.NASapis.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.json.JsonBody;
+import com.jul.NASapis.json.JsonStreams;
+import com.jul.NASapis.models.BatchRequest;
+import com.jul.NASapis.models.BatchResult;
+import com.jul.NASapis.services.UpstreamException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Runs several of the JSON routes of {@link NASAController} in one HTTP request.
+ * All sub-requests are started at once and go through the same caches, coalescing and rate limiting
+ * as their standalone routes; the answer lists one result per sub-request, in order, each with its own status.
+ */
+@RestController
+@RequestMapping("api/nasa")
+public class BatchController {
+    @Autowired NASAController nasaController;
+    @Autowired ObjectMapper objectMapper;
+    @Autowired ApplicationPropertiesConfig config;
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final Map<String, Function<Params, CompletableFuture<?>>> routes = new HashMap<>();
+
+    public BatchController() {
+        routes.put("/planetary/apod", p -> nasaController.apod(p.bool("concept_tags", false), p.get("date"),
+                p.bool("hd", false), p.integer("count", 10), p.get("start_date"), p.get("end_date"), p.bool("thumbs", false)));
+        routes.put("/neo/feed", p -> nasaController.neo(p.get("start_date"), p.get("end_date"), p.bool("detailed", true)));
+        routes.put("/neo/browse", p -> nasaController.browseNeo());
+
+        routes.put("/DONKI/CME", p -> nasaController.donkiCME(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/CME/{activityID}/chain", p -> nasaController.donkiCMEChain(p.get("activityID")));
+        routes.put("/DONKI/CMEAnalysis", p -> nasaController.donkiCMEAnalysis(p.get("start_date"), p.get("end_date"),
+                p.bool("mostAccurateOnly", true), p.bool("completeEntryOnly", true), p.integer("speed", 0),
+                p.integer("halfAngle", 0), p.get("catalog", "ALL"), p.get("keyword", "NONE"), p.list("fields"), p.list("filter")));
+        routes.put("/DONKI/GST", p -> nasaController.donkiGST(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/IPS", p -> nasaController.donkiIPS(p.get("start_date"), p.get("end_date"),
+                p.get("location", "ALL"), p.get("catalog", "ALL")));
+        routes.put("/DONKI/FLR", p -> nasaController.donkiFLR(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/SEP", p -> nasaController.donkiSEP(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/MPC", p -> nasaController.donkiMPC(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/RBE", p -> nasaController.donkiRBE(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/HSS", p -> nasaController.donkiHSS(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/WSAEnlilSimulations", p -> nasaController.donkiWSAEnlilSimulations(p.get("start_date"), p.get("end_date")));
+        routes.put("/DONKI/notifications", p -> nasaController.donkiNotifications(p.get("start_date"), p.get("end_date"),
+                p.get("type", "all")));
+
+        routes.put("/planetary/earth/assets", p -> nasaController.earthAssets(p.decimal("latitude", 1.5f),
+                p.decimal("longitude", 100.75f), p.decimal("dim", 0.025f), p.get("date")));
+
+        routes.put("/EPIC/natural", p -> nasaController.epicNatural(p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/natural/{date}", p -> nasaController.epicNaturalDate(p.get("date"), p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/natural/all", p -> nasaController.epicNaturalAll(p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/natural/available", p -> nasaController.epicNaturalAvailable(p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/enhanced", p -> nasaController.epicEnhanced(p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/enhanced/{date}", p -> nasaController.epicEnhancedDate(p.get("date"), p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/enhanced/all", p -> nasaController.epicEnhancedAll(p.list("fields"), p.list("filter")));
+        routes.put("/EPIC/enhanced/available", p -> nasaController.epicEnhancedAvailable(p.list("fields"), p.list("filter")));
+
+        routes.put("/EONET", p -> nasaController.eonet(p.list("sourceID"), p.get("status"), p.integer("limit", null),
+                p.integer("days", null), p.get("start"), p.get("end"), p.get("magnitudeID"), p.decimal("magMin", null),
+                p.decimal("magMax", null), p.decimals("bbox"), p.list("category")));
+    }
+
+    /**
+     * Batch of JSON routes, for example
+     * [{"id": "apod", "path": "/planetary/apod"}, {"id": "cme", "path": "/DONKI/CME", "params": {"start_date": "2021-01-01"}}]
+     * Images and event streams cannot be batched.
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<List<BatchResult>> batch(@RequestBody List<BatchRequest> requests){
+        int maxRequests = config.getBatch().getMaxRequests();
+        if(requests.size() > maxRequests){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch is limited to " + maxRequests + " requests");
+        }
+
+        List<CompletableFuture<BatchResult>> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            BatchRequest request = requests.get(i);
+            String id = request.getId() != null ? request.getId() : String.valueOf(i);
+            results.add(execute(request).handle((value, error) -> error == null ? success(id, value) : failure(id, error)));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<BatchResult> list = new ArrayList<>();
+            results.forEach(result -> list.add(result.join()));
+            return list;
+        });
+    }
+
+    private CompletableFuture<?> execute(BatchRequest request) {
+        try {
+            String path = request.getPath() == null ? "" : request.getPath();
+            List<String> candidates = new ArrayList<>();
+            for (String pattern : routes.keySet()) {
+                if (matcher.match(pattern, path)) {
+                    candidates.add(pattern);
+                }
+            }
+            if (candidates.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No batchable route " + path);
+            }
+            candidates.sort(matcher.getPatternComparator(path));
+            String pattern = candidates.get(0);
+
+            Map<String, String> params = new HashMap<>();
+            if (request.getParams() != null) {
+                params.putAll(request.getParams());
+            }
+            params.putAll(matcher.extractUriTemplateVariables(pattern, path));
+            return routes.get(pattern).apply(new Params(params));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private BatchResult success(String id, Object value) {
+        int status = HttpStatus.OK.value();
+        Object body = value;
+        if (value instanceof ResponseEntity) {
+            status = ((ResponseEntity<?>) value).getStatusCodeValue();
+            body = ((ResponseEntity<?>) value).getBody();
+        }
+        if (body instanceof JsonBody) {
+            byte[] source = ((JsonBody) body).bytes();
+            return new BatchResult(id, status, JsonStreams.isBlank(source) ? "{}" : new String(source, StandardCharsets.UTF_8), null);
+        }
+        try {
+            return new BatchResult(id, status, objectMapper.writeValueAsString(body), null);
+        } catch (JsonProcessingException e) {
+            return failure(id, e);
+        }
+    }
+
+    private BatchResult failure(String id, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UpstreamException) {
+            UpstreamException upstream = (UpstreamException) cause;
+            return new BatchResult(id, upstream.getStatus(), null, new String(upstream.getBody(), StandardCharsets.UTF_8));
+        }
+        if (cause instanceof ResponseStatusException) {
+            ResponseStatusException status = (ResponseStatusException) cause;
+            return new BatchResult(id, status.getStatus().value(), null, status.getReason());
+        }
+        return new BatchResult(id, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, cause.toString());
+    }
+
+    /** Query parameters and path variables of a sub-request, converted the way Spring would bind them. */
+    private static class Params {
+        final Map<String, String> values;
+
+        Params(Map<String, String> values) {
+            this.values = values;
+        }
+
+        String get(String name) {
+            return values.get(name);
+        }
+
+        String get(String name, String defaultValue) {
+            return values.getOrDefault(name, defaultValue);
+        }
+
+        boolean bool(String name, boolean defaultValue) {
+            String value = values.get(name);
+            return value == null ? defaultValue : Boolean.parseBoolean(value);
+        }
+
+        Integer integer(String name, Integer defaultValue) {
+            String value = values.get(name);
+            try {
+                return value == null ? defaultValue : Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be a whole number", e);
+            }
+        }
+
+        Float decimal(String name, Float defaultValue) {
+            String value = values.get(name);
+            try {
+                return value == null ? defaultValue : Float.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be a number", e);
+            }
+        }
+
+        String[] list(String name) {
+            String value = values.get(name);
+            return value == null ? null : value.split(",");
+        }
+
+        Float[] decimals(String name) {
+            String[] list = list(name);
+            if (list == null) {
+                return null;
+            }
+            Float[] numbers = new Float[list.length];
+            try {
+                for (int i = 0; i < list.length; i++) {
+                    numbers[i] = Float.valueOf(list[i].trim());
+                }
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be a list of numbers", e);
+            }
+            return numbers;
+        }
+    }
+}
@@ -1,24 +1,68 @@
 package com.jul.NASapis.controllers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jul.NASapis.cache.ApodCache;
+import com.jul.NASapis.cache.CachedResponse;
+import com.jul.NASapis.cache.EncodedResponse;
+import com.jul.NASapis.cache.EncodedResponseCache;
+import com.jul.NASapis.json.JsonBody;
+import com.jul.NASapis.json.JsonStreams;
+import com.jul.NASapis.json.ModelReaders;
+import com.jul.NASapis.json.RecordQuery;
 import com.jul.NASapis.models.APODModel;
 import com.jul.NASapis.models.EONETModel;
-import com.jul.NASapis.models.NEOWSModel;
-import kong.unirest.JsonNode;
-import kong.unirest.Unirest;
-import kong.unirest.json.JSONArray;
-import kong.unirest.json.JSONObject;
-import org.springframework.beans.factory.annotation.Value;
+import com.jul.NASapis.services.DonkiService;
+import com.jul.NASapis.services.EarthTiles;
+import com.jul.NASapis.services.EndpointProxy;
+import com.jul.NASapis.services.EndpointRegistry;
+import com.jul.NASapis.services.EonetSnapshot;
+import com.jul.NASapis.services.Host;
+import com.jul.NASapis.services.ImageProxy;
+import com.jul.NASapis.services.LiveFeeds;
+import com.jul.NASapis.services.NASAClient;
+import com.jul.NASapis.services.NeoFeedService;
+import com.jul.NASapis.services.Priority;
+import kong.unirest.GetRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("api/nasa")
 public class NASAController {
-    @Value("${nasa.api.key}") String TOKEN;
+    @Autowired NASAClient nasaClient;
+    @Autowired ApodCache apodCache;
+    @Autowired NeoFeedService neoFeedService;
+    @Autowired ImageProxy imageProxy;
+    @Autowired EarthTiles earthTiles;
+    @Autowired DonkiService donkiService;
+    @Autowired EndpointProxy endpointProxy;
+    @Autowired EndpointRegistry endpointRegistry;
+    @Autowired EncodedResponseCache responseCache;
+    @Autowired ObjectMapper objectMapper;
+    @Autowired LiveFeeds liveFeeds;
+    @Autowired EonetSnapshot eonetSnapshot;
 
     /**
      * Astronomy Picture of the Day
@@ -52,129 +96,99 @@ public class NASAController {
      *@param thumbs
      * If set to true, the API returns URL of video thumbnail.
      *
+     * The answer is serialized and gzipped once per date and flags, and served from the response cache after that.
      */
     @GetMapping("/planetary/apod")
-    public Map<String, Object> apod(@RequestParam(required = false, defaultValue = "false") boolean concept_tags,
-                         @RequestParam(required = false) String date,
-                         @RequestParam(defaultValue = "false") boolean hd,
-                         @RequestParam(defaultValue = "10") Integer count,
-                         @RequestParam(required = false) String start_date,
-                         @RequestParam(required = false) String end_date,
-                         @RequestParam(required = false, defaultValue = "false") boolean thumbs){
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/planetary/apod")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("concept_tags", concept_tags)
-                .queryString("date", date)
-                .queryString("hd", hd)
-                //.queryString("count", count)
-                //.queryString("start_date", start_date)
-                //.queryString("end_date", end_date)
-                .queryString("thumbs", thumbs)
-                .asJson()
-                .getBody();
-
-        JSONArray array = response.getArray();
-        List<APODModel> list = new ArrayList<>();
-        for(int i = 0 ; i < array.length(); i++){
-            String dateJson = array.getJSONObject(i).getString("date");
-            String explanationJson = array.getJSONObject(i).getString("explanation");
-            String hdurlJson = array.getJSONObject(i).getString("hdurl");
-            String titleJson = array.getJSONObject(i).getString("title");
-            String urlJson = array.getJSONObject(i).getString("url");
-
-            list.add(new APODModel(dateJson, explanationJson, hdurlJson, titleJson, urlJson));
+    public CompletableFuture<ResponseEntity<JsonBody>> apod(@RequestParam(required = false, defaultValue = "false") boolean concept_tags,
+                                                       @RequestParam(required = false) String date,
+                                                       @RequestParam(defaultValue = "false") boolean hd,
+                                                       @RequestParam(defaultValue = "10") Integer count,
+                                                       @RequestParam(required = false) String start_date,
+                                                       @RequestParam(required = false) String end_date,
+                                                       @RequestParam(required = false, defaultValue = "false") boolean thumbs){
+
+        String key = "apod/" + (date == null ? "today" : date) + "/" + concept_tags + "/" + thumbs;
+        EncodedResponse encoded = responseCache.get(key);
+        if(encoded != null){
+            return CompletableFuture.completedFuture(respond(encoded));
         }
 
-        Map<String, Object> map = new HashMap<>();
-        map.put("Info", list);
-        return map;
-    }
-
-    /** Near Earth Object Web Service */
-    @GetMapping("/neo/feed")
-    public Map<String, Object> neo(@RequestParam(required = false) String start_date,
-                        @RequestParam(required = false) String end_date,
-                        @RequestParam(defaultValue = "true") boolean detailed) {
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
+        List<APODModel> cached = apodCache.get(date, concept_tags, thumbs);
+        if(cached != null){
+            return CompletableFuture.completedFuture(respond(encodeApod(key, date, cached)));
         }
 
-        JsonNode response = Unirest.get("https://api.nasa.gov/neo/rest/v1/feed")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("start_date", start_date)
-                .queryString("end_date", end_date)
-                .queryString("detailed", detailed)
-                .asJson()
-                .getBody();
-
-        JSONArray array = response.getArray();
-        List<NEOWSModel> list = new ArrayList<>();
-
-        for(int i = 0 ; i <  response.getArray().length(); i++){
-            JSONObject object = array.getJSONObject(i);
-            JSONObject nearEarthObjects = object.getJSONObject("near_earth_objects");
-            JSONArray date  = nearEarthObjects.getJSONArray(start_date);
-
-            for(int j = 0 ; j < date.length(); j++) {
-                    int neoRefId = date.getJSONObject(j).getInt("neo_reference_id");
-                    String name = date.getJSONObject(j).getString("name");
-                    String nasaJplUrl = date.getJSONObject(j).getString("nasa_jpl_url");
-                    boolean isDangerous = date.getJSONObject(j).getBoolean("is_potentially_hazardous_asteroid");
-                    list.add(new NEOWSModel(neoRefId, name, nasaJplUrl, isDangerous));
-            }
+        Map<String, Object> params = EndpointProxy.params("concept_tags", concept_tags, "date", date, "hd", hd,
+                //"count", count,
+                //"start_date", start_date,
+                //"end_date", end_date,
+                "thumbs", thumbs);
+
+        return endpointProxy.call("apod", params).thenApply(response -> {
+            List<APODModel> list = ModelReaders.apod(response.getBody());
+            apodCache.put(date, concept_tags, thumbs, list);
+            return respond(encodeApod(key, date, list));
+        });
+    }
 
-//                for(int j = 0 ; j < date.length(); j++){
-//                    for (LocalDate start = LocalDate.now(); start.isBefore(start.plusDays(7)); start = start.plusDays(1)) {
-//                        int neoRefId = date.getJSONObject(j).getInt("neo_reference_id");
-//                        String name = date.getJSONObject(j).getString("name");
-//                        String nasaJplUrl = date.getJSONObject(j).getString("nasa_jpl_url");
-//                        boolean isDangerous = date.getJSONObject(j).getBoolean("is_potentially_hazardous_asteroid");
-//                        list.add(new NEOWSModel(neoRefId, name, nasaJplUrl, isDangerous));
-//                    }
-//            }
+    private EncodedResponse encodeApod(String key, String date, List<APODModel> list){
+        Map<String, Object> map = new HashMap<>();
+        map.put("Info", list);
+        try {
+            return responseCache.put(key, objectMapper.writeValueAsBytes(map), apodCache.ttl(date));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        Map<String, Object> map = new HashMap<>();
-        map.put("Near earth objects", list);
-        return map;
+    /**
+     * Near Earth Object Web Service
+     *
+     * @param start_date
+     * defaults to today
+     *
+     * @param end_date
+     * defaults to today; ranges longer than the 7 days NeoWs allows are split into several upstream calls
+     *
+     */
+    @GetMapping("/neo/feed")
+    public CompletableFuture<Map<String, Object>> neo(@RequestParam(required = false) String start_date,
+                                                      @RequestParam(required = false) String end_date,
+                                                      @RequestParam(defaultValue = "true") boolean detailed) {
+
+        // today is also what NeoWs itself assumes for a missing start_date
+        LocalDate start = start_date != null ? parseDate(start_date, "start_date") : LocalDate.now();
+        LocalDate end = end_date != null ? parseDate(end_date, "end_date") : LocalDate.now();
+
+        return neoFeedService.feed(start, end, detailed).thenApply(list -> {
+            Map<String, Object> map = new HashMap<>();
+            map.put("Near earth objects", list);
+            return map;
+        });
     }
 
     @GetMapping("/neo/browse")
-    public String browseNeo(){
-        JsonNode response = Unirest.get("https://api.nasa.gov/neo/rest/v1/neo/browse/")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> browseNeo(){
+        return proxy("neo-browse");
     }
 
     /** Coronal Mass Ejection */
     @GetMapping("/DONKI/CME")
-    public String donkiCME(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/CME")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiCME(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-cme", "start_date", start_date, "end_date", end_date);
+    }
 
-        return response.toPrettyString();
+    /**
+     * A CME together with every event linked to it (flares, shocks, storms, particle events, ...)
+     *
+     * @param activityID
+     * CME activity ID (example: 2017-09-10T16:09:00-CME-001)
+     *
+     */
+    @GetMapping("/DONKI/CME/{activityID}/chain")
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiCMEChain(@PathVariable String activityID){
+        return respond("donki-cme", donkiService.chain(activityID));
     }
 
     /**
@@ -197,60 +211,34 @@ public class NASAController {
      * @param keyword
      * default is set to NONE (example choices: swpc_annex)
      *
+     * @param fields
+     * only these fields of every analysis, comma separated (example: time21_5,speed,type)
+     *
+     * @param filter
+     * only analyses matching every condition, comma separated (example: speed>800,type=S)
+     *
      */
     @GetMapping("/DONKI/CMEAnalysis")
-    public String donkiCMEAnalysis(@RequestParam(required = false) String start_date,
-                                   @RequestParam(required = false) String end_date,
-                                   @RequestParam(defaultValue = "true") boolean mostAccurateOnly,
-                                   @RequestParam(defaultValue = "true") boolean completeEntryOnly,
-                                   @RequestParam(defaultValue = "0") Integer speed,
-                                   @RequestParam(defaultValue = "0") Integer halfAngle,
-                                   @RequestParam(defaultValue = "ALL") String catalog,
-                                   @RequestParam(defaultValue = "NONE") String keyword){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/CMEAnalysis")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .queryString("mostAccurateOnly", mostAccurateOnly)
-                .queryString("completeEntryOnly", completeEntryOnly)
-                .queryString("speed", speed)
-                .queryString("halfAngle", halfAngle)
-                .queryString("catalog", catalog)
-                .queryString("keyword", keyword)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiCMEAnalysis(@RequestParam(required = false) String start_date,
+                                                        @RequestParam(required = false) String end_date,
+                                                        @RequestParam(defaultValue = "true") boolean mostAccurateOnly,
+                                                        @RequestParam(defaultValue = "true") boolean completeEntryOnly,
+                                                        @RequestParam(defaultValue = "0") Integer speed,
+                                                        @RequestParam(defaultValue = "0") Integer halfAngle,
+                                                        @RequestParam(defaultValue = "ALL") String catalog,
+                                                        @RequestParam(defaultValue = "NONE") String keyword,
+                                                        @RequestParam(required = false) String[] fields,
+                                                        @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "donki-cme-analysis", "start_date", start_date, "end_date", end_date,
+                "mostAccurateOnly", mostAccurateOnly, "completeEntryOnly", completeEntryOnly, "speed", speed,
+                "halfAngle", halfAngle, "catalog", catalog, "keyword", keyword);
     }
 
     /** Geomagnetic Storm */
     @GetMapping("/DONKI/GST")
-    public String donkiGST(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/GST")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiGST(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-gst", "start_date", start_date, "end_date", end_date);
     }
 
     /**
@@ -264,159 +252,53 @@ public class NASAController {
      *
      */
     @GetMapping("/DONKI/IPS")
-    public String donkiIPS(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date,
-                           @RequestParam(defaultValue = "ALL") String location,
-                           @RequestParam(defaultValue = "ALL") String catalog){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/IPS")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .queryString("location", location)
-                .queryString("catalog", catalog)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiIPS(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date,
+                                                @RequestParam(defaultValue = "ALL") String location,
+                                                @RequestParam(defaultValue = "ALL") String catalog){
+        return proxy("donki-ips", "start_date", start_date, "end_date", end_date,
+                "location", location, "catalog", catalog);
     }
 
     /** Solar Flare */
     @GetMapping("/DONKI/FLR")
-    public String donkiFLR(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/FLR")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiFLR(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-flr", "start_date", start_date, "end_date", end_date);
     }
 
     /** Solar Energetic Particle */
     @GetMapping("/DONKI/SEP")
-    public String donkiSEP(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/SEP")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiSEP(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-sep", "start_date", start_date, "end_date", end_date);
     }
 
     /** Magnetopause Crossing */
     @GetMapping("/DONKI/MPC")
-    public String donkiMPC(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/MPC")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiMPC(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-mpc", "start_date", start_date, "end_date", end_date);
     }
 
     /** Radiation Belt Enhancement */
     @GetMapping("/DONKI/RBE")
-    public String donkiRBE(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/RBE")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiRBE(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-rbe", "start_date", start_date, "end_date", end_date);
     }
 
     /** High Speed Stream */
     @GetMapping("/DONKI/HSS")
-    public String donkiHSS(@RequestParam(required = false) String start_date,
-                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/HSS")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiHSS(@RequestParam(required = false) String start_date,
+                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-hss", "start_date", start_date, "end_date", end_date);
     }
 
     @GetMapping("/DONKI/WSAEnlilSimulations")
-    public String donkiWSAEnlilSimulations(@RequestParam(required = false) String start_date,
-                                           @RequestParam(required = false) String end_date){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/WSAEnlilSimulations")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiWSAEnlilSimulations(@RequestParam(required = false) String start_date,
+                                                                @RequestParam(required = false) String end_date){
+        return proxy("donki-wsa-enlil-simulations", "start_date", start_date, "end_date", end_date);
     }
 
     /**
@@ -426,26 +308,16 @@ public class NASAController {
      *
      */
     @GetMapping("/DONKI/notifications")
-    public String donkiNotifications(@RequestParam(required = false) String start_date,
-                                     @RequestParam(required = false) String end_date,
-                                     @RequestParam(defaultValue = "all") String type){
-
-        if(end_date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            end_date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://api.nasa.gov/DONKI/notifications")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("startDate", start_date)
-                .queryString("endDate", end_date)
-                .queryString("type", type)
-                .asJson()
-                .getBody();
+    public CompletableFuture<ResponseEntity<JsonBody>> donkiNotifications(@RequestParam(required = false) String start_date,
+                                                          @RequestParam(required = false) String end_date,
+                                                          @RequestParam(defaultValue = "all") String type){
+        return proxy("donki-notifications", "start_date", start_date, "end_date", end_date, "type", type);
+    }
 
-        return response.toPrettyString();
+    /** Server-sent events: every new DONKI notification, as the "notification" event */
+    @GetMapping(value = "/DONKI/notifications/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter donkiNotificationsStream(){
+        return liveFeeds.notifications();
     }
 
     /**
@@ -465,37 +337,33 @@ public class NASAController {
      *
      */
     @GetMapping(value = "/planetary/earth/imagery/", produces = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE})
-    public byte[] earth(@RequestParam(required = false) Float latitude,
-                        @RequestParam(required = false) Float longitude,
-                        @RequestParam(defaultValue = "0.025") Float dim,
-                        @RequestParam(required = false) String date){
+    public StreamingResponseBody earth(@RequestParam(required = false) Float latitude,
+                                       @RequestParam(required = false) Float longitude,
+                                       @RequestParam(defaultValue = "0.025") Float dim,
+                                       @RequestParam(required = false) String date,
+                                       @RequestHeader HttpHeaders headers,
+                                       HttpServletResponse response){
+
+        if(latitude == null || longitude == null){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "latitude and longitude are required");
+        }
 
+        boolean cacheable = date != null && parseDate(date, "date").isBefore(LocalDate.now());
         if(date == null){
             DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
             LocalDateTime now = LocalDateTime.now();
             date = dtf.format(now);
         }
 
-        byte[] response = Unirest.get("https://api.nasa.gov/planetary/earth/imagery/")
-                .header("content-type", MediaType.IMAGE_PNG_VALUE)
-                .header("content-type", MediaType.IMAGE_JPEG_VALUE)
-                .header("Accept-Ranges", "bytes")
-                .queryString("api_key", TOKEN)
-                .queryString("lat", latitude)
-                .queryString("lon", longitude)
-                .queryString("dim", dim)
-                .queryString("date", date)
-                .asBytes()
-                .getBody();
-
-        return response;
+        EarthTiles.Tile tile = earthTiles.tile(latitude, longitude, dim, date);
+        return out -> earthTiles.imagery(tile, cacheable, headers, response, out);
     }
 
     @GetMapping("/planetary/earth/assets")
-    public String earthAssets(@RequestParam(defaultValue = "1.5") Float latitude,
-                              @RequestParam(defaultValue = "100.75") Float longitude,
-                              @RequestParam(defaultValue = "0.025") Float dim,
-                              @RequestParam(required = false) String date){
+    public CompletableFuture<JsonBody> earthAssets(@RequestParam(defaultValue = "1.5") Float latitude,
+                                                   @RequestParam(defaultValue = "100.75") Float longitude,
+                                                   @RequestParam(defaultValue = "0.025") Float dim,
+                                                   @RequestParam(required = false) String date){
 
         if(date == null){
             DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
@@ -503,121 +371,62 @@ public class NASAController {
             date = dtf.format(now);
         }
 
-        JsonNode response = Unirest.get("https://api.nasa.gov/planetary/earth/assets")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("lat", latitude)
-                .queryString("lon", longitude)
-                .queryString("dim", dim)
-                .queryString("date", date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+        boolean pretty = pretty();
+        return earthTiles.assets(earthTiles.tile(latitude, longitude, dim, date)).thenApply(body -> new JsonBody(body, pretty));
     }
 
+    /**
+     * The EPIC listings take the same {@code fields} projection and {@code filter} conditions as
+     * {@link #donkiCMEAnalysis}, e.g. {@code fields=image,centroid_coordinates.lat&filter=centroid_coordinates.lon>0}.
+     */
     @GetMapping("/EPIC/natural")
-    public String epicNatural(){
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/natural")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicNatural(@RequestParam(required = false) String[] fields,
+                                                        @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-natural");
     }
 
     @GetMapping("/EPIC/natural/{date}")
-    public String epicNaturalDate(@PathVariable String date){
-
-        if(date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/natural/date" + "/" + date)
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("date", date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicNaturalDate(@PathVariable String date,
+                                                            @RequestParam(required = false) String[] fields,
+                                                            @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-natural-date", "date", date);
     }
 
     @GetMapping("/EPIC/natural/all")
-    public String epicNaturalAll(){
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/natural/all")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicNaturalAll(@RequestParam(required = false) String[] fields,
+                                                           @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-natural-all");
     }
 
     @GetMapping("/EPIC/natural/available")
-    public String epicNaturalAvailable(){
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/natural/available")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicNaturalAvailable(@RequestParam(required = false) String[] fields,
+                                                           @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-natural-available");
     }
 
     @GetMapping("/EPIC/enhanced")
-    public String epicEnhanced(){
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/enhanced")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicEnhanced(@RequestParam(required = false) String[] fields,
+                                                        @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-enhanced");
     }
 
     @GetMapping("/EPIC/enhanced/{date}")
-    public String epicEnhancedDate(@PathVariable String date){
-
-        if(date == null){
-            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDateTime now = LocalDateTime.now();
-            date = dtf.format(now);
-        }
-
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/enhanced/date" + "/" + date)
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .queryString("date", date)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicEnhancedDate(@PathVariable String date,
+                                                            @RequestParam(required = false) String[] fields,
+                                                            @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-enhanced-date", "date", date);
     }
 
     @GetMapping("/EPIC/enhanced/all")
-    public String epicEnhancedAll(){
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/enhanced/all")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicEnhancedAll(@RequestParam(required = false) String[] fields,
+                                                           @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-enhanced-all");
     }
 
     @GetMapping("/EPIC/enhanced/available")
-    public String epicEnhancedAvailable(){
-        JsonNode response = Unirest.get("https://epic.gsfc.nasa.gov/api/enhanced/available")
-                .header("content-type", "application/json")
-                .queryString("api_key", TOKEN)
-                .asJson()
-                .getBody();
-
-        return response.toPrettyString();
+    public CompletableFuture<ResponseEntity<JsonBody>> epicEnhancedAvailable(@RequestParam(required = false) String[] fields,
+                                                           @RequestParam(required = false) String[] filter){
+        return select(fields, filter, "epic-enhanced-available");
     }
 
     /**
@@ -642,28 +451,28 @@ public class NASAController {
      */
     //http://localhost:8080/api/nasa/EPIC/archive/natural/2015/10/31/png/epic_1b_20151031074844.png
     @GetMapping(value = "/EPIC/archive/{collection}/{year}/{month}/{day}/{imageType}/{fileName}.{imageType}", produces = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE})
-    public byte[] epicArchive(@PathVariable String collection,
-                                     @PathVariable Integer year,
-                                     @PathVariable Integer month,
-                                     @PathVariable Integer day,
-                                     @PathVariable String imageType,
-                                     @PathVariable String fileName){
-
-        byte[] response = Unirest.get("https://epic.gsfc.nasa.gov/archive/" + collection + "/"
+    public StreamingResponseBody epicArchive(@PathVariable String collection,
+                                             @PathVariable Integer year,
+                                             @PathVariable Integer month,
+                                             @PathVariable Integer day,
+                                             @PathVariable String imageType,
+                                             @PathVariable String fileName,
+                                             @RequestHeader HttpHeaders headers,
+                                             HttpServletResponse response){
+
+        GetRequest request = nasaClient.get(Host.EPIC, "/archive/" + collection + "/"
                 + year + "/" + month + "/" + day + "/" + imageType + "/" + fileName + "." + imageType)
                 .header("content-type", MediaType.IMAGE_PNG_VALUE)
-                .header("Accept-Ranges", "bytes")
-                .queryString("api_key", TOKEN)
                 .queryString("collection", collection)
                 .queryString("year", year)
                 .queryString("month", month)
                 .queryString("day", day)
                 .queryString("imageType", imageType)
-                .queryString("fileName", fileName)
-                .asBytes()
-                .getBody();
+                .queryString("fileName", fileName);
 
-        return response;
+        String cacheKey = "epic/" + collection + "/" + year + "/" + month + "/" + day + "/" + fileName + "." + imageType;
+
+        return out -> imageProxy.stream(request, Priority.NORMAL, cacheKey, headers, response, out);
     }
 
     //https://eonet.sci.gsfc.nasa.gov/api/v3/events
@@ -712,53 +521,129 @@ public class NASAController {
      * max lon, min lat
      * Query using a bounding box for all events with data points that fall within.
      * This uses two pairs of coordinates: the upper left hand corner (lon,lat) followed by the lower right hand corner (lon,lat).
+     *
+     * @param category
+     * Filter the returned events by the Category.
+     * Multiple categories can be included in the parameter: comma separated, operates as a boolean OR.
+     *
+     * Queries are answered from the local EONET snapshot whenever it holds every event they may match.
      */
     @GetMapping("/EONET")
-    public Map<String, Object> eonet(@RequestParam(required = false) String[] sourceID,
-                      @RequestParam(required = false) String status,
-                      @RequestParam(required = false) Integer limit,
-                      @RequestParam(required = false) Integer days,
-                      @RequestParam(required = false) String start,
-                      @RequestParam(required = false) String end,
-                      @RequestParam(required = false) String magnitudeID,
-                      @RequestParam(required = false) Float magMin,
-                      @RequestParam(required = false) Float magMax,
-                      @RequestParam(required = false) Float[] bbox){
+    public CompletableFuture<Map<String, Object>> eonet(@RequestParam(required = false) String[] sourceID,
+                                                        @RequestParam(required = false) String status,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        @RequestParam(required = false) Integer days,
+                                                        @RequestParam(required = false) String start,
+                                                        @RequestParam(required = false) String end,
+                                                        @RequestParam(required = false) String magnitudeID,
+                                                        @RequestParam(required = false) Float magMin,
+                                                        @RequestParam(required = false) Float magMax,
+                                                        @RequestParam(required = false) Float[] bbox,
+                                                        @RequestParam(required = false) String[] category){
 
 //        if(start == null){
 //            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 //            start = dtf.format(LocalDateTime.now());
 //        }
 
-        JSONArray response = Unirest.get("https://eonet.sci.gsfc.nasa.gov/api/v3/events")
-                .queryString("source", sourceID)
-                .queryString("status", status)
-                .queryString("limit", limit)
-                .queryString("days", days)
-                .queryString("start", start)
-                .queryString("end", end)
-                .queryString("magID", magnitudeID)
-                .queryString("magMin", magMin)
-                .queryString("magMax", magMax)
-                .queryString("bbox", bbox)
-                .asJson()
-                .getBody().getObject().getJSONArray("events");
-
-        List<EONETModel> list = new ArrayList<>();
-        for(int i = 0 ; i < response.length(); i++){
-            String id = response.getJSONObject(i).getString("id");
-            String title = response.getJSONObject(i).getString("title");
-            String url = "";
-            JSONArray sources = response.getJSONObject(i).getJSONArray("sources");
-            for(int j = 0; j < sources.length(); j++){
-                url = sources.getJSONObject(j).getString("url");
+        // days below 1 have no window the snapshot could answer for, so EONET decides what they mean
+        boolean validDays = days == null || days >= 1;
+        LocalDate from = start != null ? parseDate(start, "start") : days != null && validDays ? LocalDate.now().minusDays(days - 1) : null;
+        LocalDate to = end != null ? parseDate(end, "end") : null;
+        boolean validBbox = bbox == null || (bbox.length == 4 && bbox[0] <= bbox[2] && bbox[3] <= bbox[1]);
+        if(magnitudeID == null && validDays && validBbox && eonetSnapshot.covers(status, from)){
+            List<EONETModel> events = eonetSnapshot.query(sourceID == null ? null : Arrays.asList(sourceID),
+                    category == null ? null : Arrays.asList(category), status, from, to, magMin, magMax, bbox, limit);
+            return CompletableFuture.completedFuture(Collections.singletonMap("Info", events));
+        }
+
+        Map<String, Object> params = EndpointProxy.params("sourceID", sourceID, "status", status, "limit", limit,
+                "days", days, "start", start, "end", end, "magnitudeID", magnitudeID, "magMin", magMin, "magMax", magMax,
+                "bbox", bbox, "category", category);
+
+        return endpointProxy.call("eonet-events", params).thenApply(response -> {
+            Map<String, Object> map = new HashMap<>();
+            map.put("Info", ModelReaders.eonetEvents(response.getBody()));
+
+            return map;
+        });
+    }
+
+    /** Server-sent events: every newly opened EONET event, as the "event" event */
+    @GetMapping(value = "/EONET/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter eonetStream(){
+        return liveFeeds.openEvents();
+    }
+
+    private CompletableFuture<ResponseEntity<JsonBody>> proxy(String endpoint, Object... params){
+        return respond(endpoint, endpointProxy.call(endpoint, EndpointProxy.params(params)));
+    }
+
+    /** {@link #proxy} answering with only the matching records, projected onto the requested fields. */
+    private CompletableFuture<ResponseEntity<JsonBody>> select(String[] fields, String[] filter, String endpoint, Object... params){
+        RecordQuery query;
+        try {
+            query = RecordQuery.parse(fields, filter);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return respond(endpoint, endpointProxy.call(endpoint, EndpointProxy.params(params)), query);
+    }
+
+    /**
+     * Spring turns a matching If-None-Match into a 304 based on the ETag set here. It is weak: the body is
+     * re-encoded, so it is equivalent to the upstream bytes it is derived from rather than identical, and
+     * Tomcat only compresses responses without a strong ETag.
+     */
+    private CompletableFuture<ResponseEntity<JsonBody>> respond(String endpoint, CompletableFuture<CachedResponse> response){
+        return respond(endpoint, response, null);
+    }
+
+    private CompletableFuture<ResponseEntity<JsonBody>> respond(String endpoint, CompletableFuture<CachedResponse> response,
+                                                                RecordQuery query){
+        boolean pretty = pretty();
+        return response.thenApply(cached -> {
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag("W/" + cached.getEtag());
+            CacheControl cacheControl = endpointProxy.cacheControl(endpoint, cached);
+            if(cacheControl != null){
+                ok.cacheControl(cacheControl);
             }
-            list.add(new EONETModel(id,title,url));
+            return ok.body(query != null ? new JsonBody(query.apply(cached.getBody()), pretty) : body(endpoint, cached, pretty));
+        });
+    }
+
+    /** Precompressed endpoints are re-encoded and gzipped once per distinct upstream body. */
+    private JsonBody body(String endpoint, CachedResponse cached, boolean pretty){
+        if(!endpointRegistry.get(endpoint).isPrecompressed()){
+            return new JsonBody(cached.getBody(), pretty);
         }
+        EncodedResponse encoded = responseCache.get(endpoint + "/" + cached.getEtag() + (pretty ? "/pretty" : ""), null,
+                () -> JsonStreams.reencode(cached.getBody(), pretty));
+        return new JsonBody(cached.getBody(), pretty, encoded);
+    }
 
-        Map<String, Object> map = new HashMap<>();
-        map.put("Info", list);
+    /**
+     * Passed-through JSON is minified unless the request asks for {@code ?pretty=true}. Read on the request thread,
+     * before the handler goes asynchronous.
+     */
+    private static boolean pretty(){
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes
+                && Boolean.parseBoolean(((ServletRequestAttributes) attributes).getRequest().getParameter("pretty"));
+    }
 
-        return map;
+    private static ResponseEntity<JsonBody> respond(EncodedResponse encoded){
+        return ResponseEntity.ok().eTag(encoded.getEtag()).body(JsonBody.of(encoded));
+    }
+
+    private static LocalDate parseDate(String date, String name){
+        if(date == null){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " is required");
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be YYYY-MM-DD", e);
+        }
     }
 }
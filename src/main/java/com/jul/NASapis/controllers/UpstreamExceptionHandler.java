@@ -0,0 +1,21 @@
+package com.jul.NASapis.controllers;
+
+import com.jul.NASapis.services.UpstreamException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/** Relays NASA error answers with their original status and body. */
+@RestControllerAdvice
+public class UpstreamExceptionHandler {
+
+    @ExceptionHandler(UpstreamException.class)
+    public ResponseEntity<byte[]> upstream(UpstreamException e) {
+        HttpHeaders headers = new HttpHeaders();
+        if (e.getContentType() != null) {
+            headers.set(HttpHeaders.CONTENT_TYPE, e.getContentType());
+        }
+        return ResponseEntity.status(e.getStatus()).headers(headers).body(e.getBody());
+    }
+}
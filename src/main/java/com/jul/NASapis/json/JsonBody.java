@@ -0,0 +1,42 @@
+package com.jul.NASapis.json;
+
+import com.jul.NASapis.cache.EncodedResponse;
+import lombok.Getter;
+
+/**
+ * A JSON document received from NASA that is passed through to the client.
+ * It is never parsed into a tree: {@link JsonBodyConverter} re-encodes it token by token
+ * straight into the servlet output stream, unless it comes with an {@link EncodedResponse}
+ * that already holds the final bytes.
+ */
+@Getter
+public class JsonBody {
+    private final byte[] source;
+    private final boolean pretty;
+    private final EncodedResponse encoded;
+
+    /** Minified; indentation costs a third more bytes on NASA's larger listings. */
+    public JsonBody(byte[] source) {
+        this(source, false);
+    }
+
+    public JsonBody(byte[] source, boolean pretty) {
+        this(source, pretty, null);
+    }
+
+    public JsonBody(byte[] source, boolean pretty, EncodedResponse encoded) {
+        this.source = source;
+        this.pretty = pretty;
+        this.encoded = encoded;
+    }
+
+    /** A body that only exists in its final encoded form. */
+    public static JsonBody of(EncodedResponse encoded) {
+        return new JsonBody(null, false, encoded);
+    }
+
+    /** The document as the client gets it without compression, or as received when it is re-encoded. */
+    public byte[] bytes() {
+        return source != null ? source : encoded.bytes();
+    }
+}
@@ -0,0 +1,157 @@
+package com.jul.NASapis.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.jul.NASapis.cache.EncodedResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a {@link JsonBody} from the upstream bytes into the response without building a JSON tree.
+ * A body that comes precomputed is copied out of its {@link EncodedResponse} as is, gzipped when the request
+ * accepts it; the gzipped variant's ETag is weakened, as Spring compares If-None-Match weakly against the strong
+ * one set by the controller.
+ * The time spent is recorded as {@code nasa.json.write}; it includes waiting on a slow client.
+ */
+@Component
+public class JsonBodyConverter extends AbstractHttpMessageConverter<JsonBody> {
+    private final Timer pretty;
+    private final Timer compact;
+    private final Timer precomputed;
+
+    public JsonBodyConverter(MeterRegistry registry) {
+        super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON);
+        this.pretty = writeTimer(registry, "true");
+        this.compact = writeTimer(registry, "false");
+        this.precomputed = writeTimer(registry, "precomputed");
+    }
+
+    private static Timer writeTimer(MeterRegistry registry, String pretty) {
+        return Timer.builder("nasa.json.write")
+                .description("Re-encoding upstream JSON into the response")
+                .tag("pretty", pretty)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return JsonBody.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected JsonBody readInternal(Class<? extends JsonBody> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("JsonBody is response only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(JsonBody body, HttpOutputMessage outputMessage) throws IOException {
+        long started = System.nanoTime();
+        try {
+            if (body.getEncoded() != null) {
+                write(body.getEncoded(), outputMessage);
+            } else {
+                write(body, outputMessage);
+            }
+        } finally {
+            (body.getEncoded() != null ? precomputed : body.isPretty() ? pretty : compact)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void write(EncodedResponse encoded, HttpOutputMessage outputMessage) throws IOException {
+        HttpHeaders headers = outputMessage.getHeaders();
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT_ENCODING));
+        ByteBuffer bytes = encoded.getIdentity();
+        ServletRequestAttributes request = currentRequest();
+        if (encoded.getGzip() != null && request != null && acceptsGzip(request.getRequest())) {
+            bytes = encoded.getGzip();
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            weakenETag(headers, request.getResponse());
+        }
+        headers.setContentLength(bytes.capacity());
+        EncodedResponse.write(bytes, outputMessage.getBody());
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ? (ServletRequestAttributes) attributes : null;
+    }
+
+    /** The ETag is already on the servlet response, put there by Spring's conditional request check. */
+    private static void weakenETag(HttpHeaders headers, HttpServletResponse response) {
+        String etag = response == null ? null : response.getHeader(HttpHeaders.ETAG);
+        headers.remove(HttpHeaders.ETAG);
+        if (etag != null && !etag.startsWith("W/")) {
+            response.setHeader(HttpHeaders.ETAG, "W/" + etag);
+        }
+    }
+
+    /** Whether the request's Accept-Encoding allows gzip, i.e. lists gzip or * without q=0. */
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> values = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (values != null && values.hasMoreElements()) {
+            for (String coding : values.nextElement().split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim();
+                if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                    boolean refused = false;
+                    for (int i = 1; i < parts.length; i++) {
+                        String parameter = parts[i].trim();
+                        if (parameter.startsWith("q=")) {
+                            try {
+                                refused = Double.parseDouble(parameter.substring(2)) == 0;
+                            } catch (NumberFormatException e) {
+                                refused = true;
+                            }
+                        }
+                    }
+                    if (!refused) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void write(JsonBody body, HttpOutputMessage outputMessage) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(outputMessage.getBody(), StandardCharsets.UTF_8));
+        if (JsonStreams.isBlank(body.getSource())) {
+            out.write("{}");
+        } else {
+            JsonReader in = JsonStreams.reader(body.getSource());
+            JsonWriter writer = JsonStreams.writer(out, body.isPretty());
+            JsonStreams.copy(in, writer);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,113 @@
+package com.jul.NASapis.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/** Token level JSON helpers built on Gson's streaming reader and writer. */
+public final class JsonStreams {
+
+    private JsonStreams() {
+    }
+
+    public static JsonReader reader(byte[] source) {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(source), StandardCharsets.UTF_8));
+    }
+
+    public static JsonWriter writer(Writer out, boolean pretty) {
+        JsonWriter writer = new JsonWriter(out);
+        if (pretty) {
+            writer.setIndent("  ");
+        }
+        return writer;
+    }
+
+    /** The document re-encoded, indented or minified; a blank document becomes {@code {}}. */
+    public static byte[] reencode(byte[] source, boolean pretty) {
+        if (isBlank(source)) {
+            return "{}".getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(source.length + source.length / 2);
+        try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+            copy(reader(source), writer(out, pretty));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Copies one complete value (and everything nested in it) from {@code in} to {@code out}. */
+    public static void copy(JsonReader in, JsonWriter out) throws IOException {
+        int depth = 0;
+        do {
+            JsonToken token = in.peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    out.endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    out.endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    out.name(in.nextName());
+                    break;
+                case STRING:
+                    out.value(in.nextString());
+                    break;
+                case NUMBER:
+                    out.jsonValue(in.nextString());
+                    break;
+                case BOOLEAN:
+                    out.value(in.nextBoolean());
+                    break;
+                case NULL:
+                    in.nextNull();
+                    out.nullValue();
+                    break;
+                default:
+                    throw new IOException("Unexpected " + token + " in upstream JSON");
+            }
+        } while (depth > 0);
+    }
+
+    /** Reads the current string value, tolerating JSON null. */
+    public static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    public static boolean isBlank(byte[] source) {
+        for (byte b : source) {
+            if (!Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,403 @@
+package com.jul.NASapis.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.jul.NASapis.models.APODModel;
+import com.jul.NASapis.models.DonkiCatalog;
+import com.jul.NASapis.models.DonkiEvent;
+import com.jul.NASapis.models.EONETGeometry;
+import com.jul.NASapis.models.EONETModel;
+import com.jul.NASapis.models.NEOWSModel;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single pass extraction of our models from NASA responses.
+ * Only the fields the models carry are decoded; everything else is skipped without being materialized.
+ */
+public final class ModelReaders {
+
+    private ModelReaders() {
+    }
+
+    /** APOD answers with one object for a single date and with an array otherwise. */
+    public static List<APODModel> apod(byte[] source) {
+        try (JsonReader in = JsonStreams.reader(source)) {
+            List<APODModel> list = new ArrayList<>();
+            if (in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(apodEntry(in));
+                }
+                in.endArray();
+            } else {
+                list.add(apodEntry(in));
+            }
+            return list;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static APODModel apodEntry(JsonReader in) throws IOException {
+        String date = null, explanation = null, hdurl = null, title = null, url = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "date": date = JsonStreams.nextString(in); break;
+                case "explanation": explanation = JsonStreams.nextString(in); break;
+                case "hdurl": hdurl = JsonStreams.nextString(in); break;
+                case "title": title = JsonStreams.nextString(in); break;
+                case "url": url = JsonStreams.nextString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        if (date == null) {
+            throw new IllegalStateException("APOD response has no date, NASA probably answered with an error");
+        }
+        return new APODModel(date, explanation, hdurl, title, url);
+    }
+
+    /** The {@code near_earth_objects} of a NeoWs feed response, by day. */
+    public static Map<LocalDate, List<NEOWSModel>> neoFeed(byte[] source) {
+        try (JsonReader in = JsonStreams.reader(source)) {
+            Map<LocalDate, List<NEOWSModel>> days = new TreeMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"near_earth_objects".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    LocalDate day = LocalDate.parse(in.nextName());
+                    List<NEOWSModel> list = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        list.add(neo(in));
+                    }
+                    in.endArray();
+                    days.put(day, list);
+                }
+                in.endObject();
+            }
+            in.endObject();
+            return days;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static NEOWSModel neo(JsonReader in) throws IOException {
+        int neoRefId = 0;
+        String name = null, nasaJplUrl = null;
+        boolean isDangerous = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "neo_reference_id": neoRefId = in.nextInt(); break;
+                case "name": name = JsonStreams.nextString(in); break;
+                case "nasa_jpl_url": nasaJplUrl = JsonStreams.nextString(in); break;
+                case "is_potentially_hazardous_asteroid": isDangerous = in.nextBoolean(); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return new NEOWSModel(neoRefId, name, nasaJplUrl, isDangerous);
+    }
+
+    /** The {@code events} of an EONET v3 response, with their geometry; the url is the one of the last listed source. */
+    public static List<EONETModel> eonetEvents(byte[] source) {
+        try (JsonReader in = JsonStreams.reader(source)) {
+            List<EONETModel> list = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"events".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(eonetEvent(in));
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return list;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A single EONET v3 event, as {@code /api/v3/events/{id}} answers it. */
+    public static EONETModel eonetEvent(byte[] source) {
+        try (JsonReader in = JsonStreams.reader(source)) {
+            return eonetEvent(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static EONETModel eonetEvent(JsonReader in) throws IOException {
+        String id = null, title = null, url = "", closed = null;
+        List<String> categories = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        List<EONETGeometry> geometry = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": id = JsonStreams.nextString(in); break;
+                case "title": title = JsonStreams.nextString(in); break;
+                case "closed": closed = JsonStreams.nextString(in); break;
+                case "categories":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            if ("id".equals(in.nextName())) {
+                                categories.add(JsonStreams.nextString(in));
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                    }
+                    in.endArray();
+                    break;
+                case "sources":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            switch (in.nextName()) {
+                                case "id": sources.add(JsonStreams.nextString(in)); break;
+                                case "url": url = JsonStreams.nextString(in); break;
+                                default: in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                    }
+                    in.endArray();
+                    break;
+                case "geometry":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        geometry.add(eonetGeometry(in));
+                    }
+                    in.endArray();
+                    break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return new EONETModel(id, title, url, closed, categories, sources, geometry);
+    }
+
+    private static EONETGeometry eonetGeometry(JsonReader in) throws IOException {
+        String date = null, type = null, magnitudeUnit = null;
+        Double magnitudeValue = null;
+        List<double[]> coordinates = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "date": date = JsonStreams.nextString(in); break;
+                case "type": type = JsonStreams.nextString(in); break;
+                case "magnitudeUnit": magnitudeUnit = JsonStreams.nextString(in); break;
+                case "magnitudeValue":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        magnitudeValue = in.nextDouble();
+                    }
+                    break;
+                case "coordinates": coordinates(in, coordinates); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return new EONETGeometry(date, type, magnitudeValue, magnitudeUnit, coordinates);
+    }
+
+    /** Flattens GeoJSON coordinates of any nesting depth into [lon, lat] pairs. */
+    private static void coordinates(JsonReader in, List<double[]> points) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return;
+        }
+        in.beginArray();
+        if (in.hasNext() && in.peek() == JsonToken.NUMBER) {
+            double lon = in.nextDouble();
+            double lat = in.hasNext() ? in.nextDouble() : 0;
+            while (in.hasNext()) {
+                in.skipValue();
+            }
+            points.add(new double[]{lon, lat});
+        } else {
+            while (in.hasNext()) {
+                coordinates(in, points);
+            }
+        }
+        in.endArray();
+    }
+
+    /** DONKI catalogs answer with an array of events, or with an empty body when there are none. */
+    public static List<DonkiEvent> donkiEvents(byte[] source, DonkiCatalog catalog) {
+        List<DonkiEvent> events = new ArrayList<>();
+        if (JsonStreams.isBlank(source)) {
+            return events;
+        }
+        try (JsonReader in = JsonStreams.reader(source)) {
+            in.beginArray();
+            while (in.hasNext()) {
+                DonkiEvent event = donkiEvent(in, catalog);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+            in.endArray();
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A single event object, as written by {@link DonkiEvent#getJson()}. */
+    public static DonkiEvent donkiEvent(String json, DonkiCatalog catalog) {
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            return donkiEvent(in, catalog);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Re-encodes the event compactly while picking out its ID, time and linked activity IDs;
+     * events lacking an ID or time are dropped.
+     */
+    private static DonkiEvent donkiEvent(JsonReader in, DonkiCatalog catalog) throws IOException {
+        String id = null, time = null;
+        List<String> linkedIds = new ArrayList<>();
+        StringWriter json = new StringWriter();
+        JsonWriter out = JsonStreams.writer(json, false);
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            out.name(name);
+            if (name.equals(catalog.getIdField())) {
+                id = JsonStreams.nextString(in);
+                out.value(id);
+            } else if (name.equals(catalog.getTimeField())) {
+                time = JsonStreams.nextString(in);
+                out.value(time);
+            } else if (name.equals("linkedEvents") && in.peek() == JsonToken.BEGIN_ARRAY) {
+                linkedEvents(in, out, linkedIds);
+            } else {
+                JsonStreams.copy(in, out);
+            }
+        }
+        in.endObject();
+        out.endObject();
+        out.flush();
+        return id == null || time == null ? null : new DonkiEvent(id, time, json.toString(), linkedIds);
+    }
+
+    /** {@code linkedEvents} is an array of {"activityID": ...} objects. */
+    private static void linkedEvents(JsonReader in, JsonWriter out, List<String> linkedIds) throws IOException {
+        in.beginArray();
+        out.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                JsonStreams.copy(in, out);
+                continue;
+            }
+            in.beginObject();
+            out.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                out.name(name);
+                if (name.equals("activityID")) {
+                    String linked = JsonStreams.nextString(in);
+                    out.value(linked);
+                    if (linked != null) {
+                        linkedIds.add(linked);
+                    }
+                } else {
+                    JsonStreams.copy(in, out);
+                }
+            }
+            in.endObject();
+            out.endObject();
+        }
+        in.endArray();
+        out.endArray();
+    }
+
+    /**
+     * Compact JSON of every object in a list, keyed by its {@code idField}; the list is the top level value when
+     * {@code listField} is null and the value of that member of the top level object otherwise.
+     */
+    public static Map<String, String> items(byte[] source, String listField, String idField) {
+        Map<String, String> items = new LinkedHashMap<>();
+        if (JsonStreams.isBlank(source)) {
+            return items;
+        }
+        try (JsonReader in = JsonStreams.reader(source)) {
+            if (listField == null) {
+                itemList(in, idField, items);
+                return items;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                if (listField.equals(in.nextName())) {
+                    itemList(in, idField, items);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return items;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void itemList(JsonReader in, String idField, Map<String, String> items) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            String id = null;
+            StringWriter json = new StringWriter();
+            JsonWriter out = JsonStreams.writer(json, false);
+            in.beginObject();
+            out.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                out.name(name);
+                if (name.equals(idField) && in.peek() == JsonToken.STRING) {
+                    id = in.nextString();
+                    out.value(id);
+                } else {
+                    JsonStreams.copy(in, out);
+                }
+            }
+            in.endObject();
+            out.endObject();
+            out.flush();
+            if (id != null) {
+                items.put(id, json.toString());
+            }
+        }
+        in.endArray();
+    }
+}
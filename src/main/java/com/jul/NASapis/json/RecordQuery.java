@@ -0,0 +1,257 @@
+package com.jul.NASapis.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Field projection and filtering of the records of a JSON array, applied while the array is streamed: of every
+ * record only the fields asked for or tested are read, everything else is skipped token by token, and only the
+ * records matching every condition are written out, cut down to the requested fields.
+ * <p>
+ * Fields are names or dotted paths into nested objects ({@code centroid_coordinates.lat}). A condition is
+ * {@code path op value} with {@code op} one of {@code = != > >= < <=}; both sides are compared as numbers when
+ * they are numbers and as text otherwise, which orders ISO dates and times correctly, and {@code =} and
+ * {@code !=} ignore case. A record without the tested field, or where it is not a plain value, never matches.
+ * Elements of the array that are not objects have no fields: they are kept only when there are no conditions.
+ */
+public final class RecordQuery {
+    private static final Pattern CONDITION = Pattern.compile("\\s*([\\w.]+)\\s*(!=|>=|<=|=|>|<)\\s*(.*?)\\s*");
+    private static final Pattern PATH = Pattern.compile("\\w+(\\.\\w+)*");
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
+    /** Null to write whole records. */
+    private final Selection fields;
+    /** Null to read whole records. */
+    private final Selection read;
+    private final List<Condition> conditions;
+
+    private RecordQuery(Selection fields, Selection read, List<Condition> conditions) {
+        this.fields = fields;
+        this.read = read;
+        this.conditions = conditions;
+    }
+
+    /**
+     * The query of the {@code fields} and {@code filters} request parameters, or null when both are empty.
+     *
+     * @throws IllegalArgumentException naming the malformed field or condition
+     */
+    public static RecordQuery parse(String[] fields, String[] filters) {
+        List<Condition> conditions = new ArrayList<>();
+        if (filters != null) {
+            for (String filter : filters) {
+                if (filter.isBlank()) {
+                    continue;
+                }
+                Matcher matcher = CONDITION.matcher(filter);
+                if (!matcher.matches()) {
+                    throw new IllegalArgumentException("filter " + filter + " must be field op value, op one of = != > >= < <=");
+                }
+                conditions.add(new Condition(path(matcher.group(1)), matcher.group(2), matcher.group(3)));
+            }
+        }
+
+        List<String[]> paths = new ArrayList<>();
+        if (fields != null) {
+            for (String field : fields) {
+                if (!field.isBlank()) {
+                    paths.add(path(field.trim()));
+                }
+            }
+        }
+        if (paths.isEmpty() && conditions.isEmpty()) {
+            return null;
+        }
+        if (paths.isEmpty()) {
+            return new RecordQuery(null, null, conditions);
+        }
+
+        List<String[]> tested = new ArrayList<>(paths);
+        conditions.forEach(condition -> tested.add(condition.path));
+        return new RecordQuery(selection(paths), selection(tested), conditions);
+    }
+
+    private static Selection selection(List<String[]> paths) {
+        Selection selection = new Selection();
+        paths.forEach(path -> selection.add(path, 0));
+        return selection;
+    }
+
+    private static String[] path(String path) {
+        if (!PATH.matcher(path).matches()) {
+            throw new IllegalArgumentException("field " + path + " must be a name or a dotted path of names");
+        }
+        return path.split("\\.");
+    }
+
+    /** The matching records of the array in {@code source}, projected and minified; anything but an array as is. */
+    public byte[] apply(byte[] source) {
+        if (JsonStreams.isBlank(source)) {
+            return source;
+        }
+        try (JsonReader in = JsonStreams.reader(source)) {
+            if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                return source;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+                JsonWriter writer = JsonStreams.writer(out, false);
+                writer.beginArray();
+                in.beginArray();
+                while (in.hasNext()) {
+                    if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                        JsonElement element = JsonParser.parseReader(in);
+                        if (conditions.isEmpty()) {
+                            GSON.toJson(element, writer);
+                        }
+                        continue;
+                    }
+                    JsonObject record = read == null ? JsonParser.parseReader(in).getAsJsonObject() : read(in, read);
+                    if (matches(record)) {
+                        GSON.toJson(fields == null ? record : project(record, fields), writer);
+                    }
+                }
+                in.endArray();
+                writer.endArray();
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean matches(JsonObject record) {
+        for (Condition condition : conditions) {
+            if (!condition.test(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reads the selected parts of the object {@code in} is at, skipping the rest. */
+    private static JsonObject read(JsonReader in, Selection selection) throws IOException {
+        JsonObject object = new JsonObject();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (!selection.children.containsKey(name)) {
+                in.skipValue();
+                continue;
+            }
+            Selection child = selection.children.get(name);
+            if (child == null) {
+                object.add(name, JsonParser.parseReader(in));
+            } else if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                object.add(name, read(in, child));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return object;
+    }
+
+    private static JsonObject project(JsonObject record, Selection selection) {
+        JsonObject projected = new JsonObject();
+        selection.children.forEach((name, child) -> {
+            JsonElement value = record.get(name);
+            if (value == null) {
+                return;
+            }
+            if (child == null) {
+                projected.add(name, value);
+            } else if (value.isJsonObject()) {
+                projected.add(name, project(value.getAsJsonObject(), child));
+            }
+        });
+        return projected;
+    }
+
+    /** Which members of an object to keep; a null child keeps the member's whole value. */
+    private static final class Selection {
+        final Map<String, Selection> children = new LinkedHashMap<>();
+
+        void add(String[] path, int from) {
+            String name = path[from];
+            if (children.containsKey(name) && children.get(name) == null) {
+                return;
+            }
+            if (from == path.length - 1) {
+                children.put(name, null);
+            } else {
+                children.computeIfAbsent(name, n -> new Selection()).add(path, from + 1);
+            }
+        }
+    }
+
+    private static final class Condition {
+        final String[] path;
+        final String op;
+        final String value;
+        final BigDecimal number;
+
+        Condition(String[] path, String op, String value) {
+            this.path = path;
+            this.op = op;
+            this.value = value;
+            this.number = number(value);
+        }
+
+        boolean test(JsonObject record) {
+            JsonElement element = record;
+            for (String name : path) {
+                element = element.isJsonObject() ? element.getAsJsonObject().get(name) : null;
+                if (element == null) {
+                    return false;
+                }
+            }
+            if (!element.isJsonPrimitive()) {
+                return false;
+            }
+            String actual = ((JsonPrimitive) element).getAsString();
+            BigDecimal actualNumber = number == null ? null : number(actual);
+            if (actualNumber == null && (op.equals("=") || op.equals("!="))) {
+                return actual.equalsIgnoreCase(value) == op.equals("=");
+            }
+            int order = actualNumber != null ? actualNumber.compareTo(number) : actual.compareTo(value);
+            switch (op) {
+                case "=": return order == 0;
+                case "!=": return order != 0;
+                case ">": return order > 0;
+                case ">=": return order >= 0;
+                case "<": return order < 0;
+                default: return order <= 0;
+            }
+        }
+
+        private static BigDecimal number(String text) {
+            try {
+                return new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
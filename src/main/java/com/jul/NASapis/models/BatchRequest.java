@@ -0,0 +1,16 @@
+package com.jul.NASapis.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** One sub-request of a batch: a route below api/nasa and its query parameters. */
+@Getter
+@Setter
+public class BatchRequest {
+    String id;
+    String path;
+    Map<String, String> params = new LinkedHashMap<>();
+}
@@ -0,0 +1,23 @@
+package com.jul.NASapis.models;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Getter;
+import lombok.Setter;
+
+/** Outcome of one sub-request: its status and either the JSON body the route would have answered or an error. */
+@Getter
+@Setter
+public class BatchResult {
+    String id;
+    int status;
+    @JsonRawValue
+    String body;
+    String error;
+
+    public BatchResult(String id, int status, String body, String error) {
+        this.id = id;
+        this.status = status;
+        this.body = body;
+        this.error = error;
+    }
+}
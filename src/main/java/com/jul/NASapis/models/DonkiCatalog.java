@@ -0,0 +1,43 @@
+package com.jul.NASapis.models;
+
+/** DONKI catalogs kept in the local event store, with the fields that identify and date their events. */
+public enum DonkiCatalog {
+    CME("activityID", "startTime"),
+    GST("gstID", "startTime"),
+    IPS("activityID", "eventTime"),
+    FLR("flrID", "beginTime"),
+    SEP("sepID", "eventTime"),
+    MPC("mpcID", "eventTime"),
+    RBE("rbeID", "eventTime"),
+    HSS("hssID", "eventTime");
+
+    private final String idField;
+    private final String timeField;
+
+    DonkiCatalog(String idField, String timeField) {
+        this.idField = idField;
+        this.timeField = timeField;
+    }
+
+    /** Activity IDs name their catalog, e.g. 2017-09-10T16:09:00-CME-001; null for anything else. */
+    public static DonkiCatalog ofId(String activityID) {
+        String[] parts = activityID.split("-");
+        if (parts.length < 2) {
+            return null;
+        }
+        for (DonkiCatalog catalog : values()) {
+            if (catalog.name().equals(parts[parts.length - 2])) {
+                return catalog;
+            }
+        }
+        return null;
+    }
+
+    public String getIdField() {
+        return idField;
+    }
+
+    public String getTimeField() {
+        return timeField;
+    }
+}
@@ -0,0 +1,21 @@
+package com.jul.NASapis.models;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/** One DONKI record: its ID, its ISO time, the IDs of its linkedEvents and the record itself as compact JSON. */
+@Getter
+public class DonkiEvent {
+    String id;
+    String time;
+    String json;
+    List<String> linkedIds;
+
+    public DonkiEvent(String id, String time, String json, List<String> linkedIds) {
+        this.id = id;
+        this.time = time;
+        this.json = json;
+        this.linkedIds = linkedIds;
+    }
+}
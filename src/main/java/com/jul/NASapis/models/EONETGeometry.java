@@ -0,0 +1,25 @@
+package com.jul.NASapis.models;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/** One dated observation of an EONET event; a Point has one [lon, lat] pair, a Polygon all of its vertices. */
+@Getter
+@Setter
+public class EONETGeometry {
+    String date;
+    String type;
+    Double magnitudeValue;
+    String magnitudeUnit;
+    List<double[]> coordinates;
+
+    public EONETGeometry(String date, String type, Double magnitudeValue, String magnitudeUnit, List<double[]> coordinates) {
+        this.date = date;
+        this.type = type;
+        this.magnitudeValue = magnitudeValue;
+        this.magnitudeUnit = magnitudeUnit;
+        this.coordinates = coordinates;
+    }
+}
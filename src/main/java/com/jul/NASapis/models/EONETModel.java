@@ -3,12 +3,18 @@ package com.jul.NASapis.models;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Getter
 @Setter
 public class EONETModel {
     String id;
     String title;
     String url;
+    String closed;
+    List<String> categories;
+    List<String> sources;
+    List<EONETGeometry> geometry;
 
     public EONETModel(String id, String title, String url) {
         this.id = id;
@@ -20,4 +26,13 @@ public class EONETModel {
         this.id = id;
         this.title = title;
     }
+
+    public EONETModel(String id, String title, String url, String closed, List<String> categories,
+                      List<String> sources, List<EONETGeometry> geometry) {
+        this(id, title, url);
+        this.closed = closed;
+        this.categories = categories;
+        this.sources = sources;
+        this.geometry = geometry;
+    }
 }
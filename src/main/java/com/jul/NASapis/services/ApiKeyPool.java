@@ -0,0 +1,148 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import kong.unirest.Headers;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The api.nasa.gov keys we may spend.
+ * Each call goes to the healthy key with the most estimated budget left; a key answered with 429 or 403
+ * is quarantined until its hourly window has passed (or NASA's Retry-After, if sent) and then reinstated.
+ */
+@Slf4j
+@Component
+public class ApiKeyPool {
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final List<KeyState> keys = new ArrayList<>();
+    private final Duration quarantine;
+
+    public ApiKeyPool(ApplicationPropertiesConfig config, MeterRegistry registry) {
+        this.quarantine = config.getRateLimit().getQuarantine();
+        int hourlyLimit = config.getRateLimit().getHourlyLimit();
+        for (String key : config.allKeys()) {
+            KeyState state = new KeyState(key, hourlyLimit);
+            Gauge.builder("nasa.api.key.remaining", state, s -> s.estimate(System.currentTimeMillis()))
+                    .description("Estimated budget left on one api.nasa.gov key")
+                    .tag("key", String.valueOf(keys.size()))
+                    .register(registry);
+            keys.add(state);
+        }
+    }
+
+    /** Picks a key for the next call and charges it one request. */
+    public synchronized String acquire() {
+        long now = System.currentTimeMillis();
+        KeyState best = null;
+        for (KeyState state : keys) {
+            if (state.available(now) && (best == null || state.estimate(now) > best.estimate(now))) {
+                best = state;
+            }
+        }
+        if (best == null) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Every NASA API key is rate limited, try again later");
+        }
+        best.charge(now);
+        return best.key;
+    }
+
+    public synchronized void record(String key, int status, Headers headers) {
+        KeyState state = find(key);
+        if (state == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (status == 429 || status == 403) {
+            Double retryAfter = header(headers, "Retry-After");
+            long wait = retryAfter != null ? TimeUnit.SECONDS.toMillis(retryAfter.longValue()) : quarantine.toMillis();
+            state.quarantinedUntil = now + wait;
+            log.warn("NASA API key #{} answered {}, quarantined for {} s", keys.indexOf(state), status, wait / 1000);
+            return;
+        }
+
+        Double limit = header(headers, "X-RateLimit-Limit");
+        Double remaining = header(headers, "X-RateLimit-Remaining");
+        if (limit != null) {
+            state.limit = limit;
+        }
+        if (remaining != null) {
+            state.remaining = remaining;
+            state.updatedAt = now;
+        }
+    }
+
+    /** Hourly quota of every key that is currently usable. */
+    public synchronized double capacity() {
+        long now = System.currentTimeMillis();
+        return keys.stream().filter(state -> state.available(now)).mapToDouble(state -> state.limit).sum();
+    }
+
+    /** Estimated calls left across every usable key. */
+    public synchronized double remaining() {
+        long now = System.currentTimeMillis();
+        return keys.stream().filter(state -> state.available(now)).mapToDouble(state -> state.estimate(now)).sum();
+    }
+
+    private KeyState find(String key) {
+        return keys.stream().filter(state -> state.key.equals(key)).findFirst().orElse(null);
+    }
+
+    private static Double header(Headers headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class KeyState {
+        final String key;
+        double limit;
+        double remaining;
+        long updatedAt = System.currentTimeMillis();
+        long quarantinedUntil;
+
+        KeyState(String key, double limit) {
+            this.key = key;
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        boolean available(long now) {
+            if (quarantinedUntil == 0) {
+                return true;
+            }
+            if (quarantinedUntil > now) {
+                return false;
+            }
+            quarantinedUntil = 0;
+            remaining = limit;
+            updatedAt = now;
+            return true;
+        }
+
+        /** NASA's quota is a rolling hour, so the last reported value refills linearly. */
+        double estimate(long now) {
+            return Math.min(limit, remaining + (now - updatedAt) * limit / HOUR_MILLIS);
+        }
+
+        void charge(long now) {
+            remaining = estimate(now) - 1;
+            updatedAt = now;
+        }
+    }
+}
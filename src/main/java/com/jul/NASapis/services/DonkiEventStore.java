@@ -0,0 +1,364 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.json.ModelReaders;
+import com.jul.NASapis.models.DonkiCatalog;
+import com.jul.NASapis.models.DonkiEvent;
+import kong.unirest.GetRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local copy of the DONKI catalogs, so range queries are answered without downloading the range again.
+ * Each catalog holds its events by activity ID and the spans of days it covers: a query fetches only the days
+ * of its range no span covers yet, in calls of at most {@code syncChunkDays} ({@value #PARALLEL_SYNCS} at a
+ * time) that each extend the coverage as they land, and a background poller fetches the trailing
+ * {@code revisionWindow} of every catalog queried within that window, because DONKI keeps revising recent
+ * records; a catalog idle for longer is caught up by its next query instead.
+ * Events are persisted as an append-only JSON lines log per catalog (rewritten compactly on startup) plus a
+ * small coverage file with one span per line, under {@code cacheDirectory/donki}.
+ */
+@Slf4j
+@Service
+public class DonkiEventStore {
+    static final int PARALLEL_SYNCS = 4;
+
+    private final NASAClient nasaClient;
+    private final DonkiLinkIndex links;
+    private final Path directory;
+    private final Duration pollInterval;
+    private final Duration revisionWindow;
+    private final int syncChunkDays;
+    private final boolean enabled;
+    private final Map<DonkiCatalog, Catalog> catalogs = new EnumMap<>(DonkiCatalog.class);
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "donki-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DonkiEventStore(NASAClient nasaClient, DonkiLinkIndex links, ApplicationPropertiesConfig config) {
+        ApplicationPropertiesConfig.Donki donki = config.getDonki();
+        this.nasaClient = nasaClient;
+        this.links = links;
+        this.directory = config.getCacheDirectory().resolve("donki");
+        this.pollInterval = donki.getPollInterval();
+        this.revisionWindow = donki.getRevisionWindow();
+        this.syncChunkDays = Math.max(1, donki.getSyncChunkDays());
+        this.enabled = donki.isStoreEnabled();
+        for (DonkiCatalog type : DonkiCatalog.values()) {
+            Catalog catalog = enabled ? load(type) : new Catalog();
+            catalog.byId.values().forEach(event -> links.update(null, event));
+            catalogs.put(type, catalog);
+        }
+        if (!enabled) {
+            return;
+        }
+        long interval = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Events of {@code type} dated between {@code start} and {@code end}, syncing whatever is not held yet. */
+    public CompletableFuture<List<DonkiEvent>> range(DonkiCatalog type, LocalDate start, LocalDate end) {
+        LocalDate today = LocalDate.now();
+        LocalDate last = end.isAfter(today) ? today : end;
+        if (start.isAfter(last)) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        Catalog catalog = catalogs.get(type);
+        List<CompletableFuture<Void>> syncs = new ArrayList<>();
+        synchronized (catalog) {
+            catalog.queriedAt = System.currentTimeMillis();
+            List<LocalDate[]> gaps = catalog.gaps(start, last);
+            syncs.add(syncChunks(type, gaps, Priority.NORMAL));
+
+            LocalDate recent = today.minusDays(revisionWindow.toDays());
+            boolean recentGap = gaps.stream().anyMatch(gap -> !gap[1].isBefore(recent));
+            if (!last.isBefore(recent) && !recentGap
+                    && System.currentTimeMillis() - catalog.syncedAt > 2 * pollInterval.toMillis()) {
+                // what is held is still served when NASA cannot be reached to bring it up to date
+                LocalDate from = start.isAfter(recent) ? start : recent;
+                syncs.add(syncChunks(type, Collections.singletonList(new LocalDate[]{from, today}), Priority.NORMAL)
+                        .exceptionally(error -> {
+                            log.debug("Catching up DONKI {} failed, answering from the store: {}", type, error.toString());
+                            return null;
+                        }));
+            }
+        }
+        return CompletableFuture.allOf(syncs.toArray(new CompletableFuture[0]))
+                .thenApply(done -> query(catalog, start, last));
+    }
+
+    private List<DonkiEvent> query(Catalog catalog, LocalDate start, LocalDate end) {
+        synchronized (catalog) {
+            return new ArrayList<>(catalog.byTime.subMap(start.toString(), true, end.plusDays(1).toString(), false).values());
+        }
+    }
+
+    /**
+     * Catalogs queried within the last {@code revisionWindow} whose latest span reaches into it are brought up
+     * to today; idle catalogs are left alone, so they stop spending quota.
+     */
+    private void poll() {
+        LocalDate today = LocalDate.now();
+        long idleSince = System.currentTimeMillis() - revisionWindow.toMillis();
+        for (Map.Entry<DonkiCatalog, Catalog> entry : catalogs.entrySet()) {
+            LocalDate from;
+            synchronized (entry.getValue()) {
+                Map.Entry<LocalDate, LocalDate> latest = entry.getValue().covered.lastEntry();
+                if (entry.getValue().queriedAt < idleSince || latest == null || latest.getValue().isBefore(today.minusDays(revisionWindow.toDays()))) {
+                    continue;
+                }
+                from = latest.getValue().minusDays(revisionWindow.toDays());
+                from = from.isBefore(latest.getKey()) ? latest.getKey() : from;
+            }
+            syncChunks(entry.getKey(), Collections.singletonList(new LocalDate[]{from, today}), Priority.LOW)
+                    .whenComplete((done, error) -> {
+                        if (error != null) {
+                            log.debug("Polling DONKI {} failed: {}", entry.getKey(), error.toString());
+                        }
+                    });
+        }
+    }
+
+    /** Fetches the spans in calls of at most {@code syncChunkDays}, running {@value #PARALLEL_SYNCS} at a time. */
+    private CompletableFuture<Void> syncChunks(DonkiCatalog type, List<LocalDate[]> spans, Priority priority) {
+        Queue<LocalDate[]> pending = new ConcurrentLinkedQueue<>();
+        for (LocalDate[] span : spans) {
+            for (LocalDate from = span[0]; !from.isAfter(span[1]); from = from.plusDays(syncChunkDays)) {
+                LocalDate to = from.plusDays(syncChunkDays - 1);
+                pending.add(new LocalDate[]{from, to.isAfter(span[1]) ? span[1] : to});
+            }
+        }
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.min(PARALLEL_SYNCS, pending.size()); i++) {
+            lanes.add(syncNext(type, pending, priority));
+        }
+        return CompletableFuture.allOf(lanes.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> syncNext(DonkiCatalog type, Queue<LocalDate[]> pending, Priority priority) {
+        LocalDate[] chunk = pending.poll();
+        if (chunk == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return sync(type, chunk[0], chunk[1], priority).thenCompose(done -> syncNext(type, pending, priority));
+    }
+
+    private CompletableFuture<Void> sync(DonkiCatalog type, LocalDate from, LocalDate to, Priority priority) {
+        GetRequest request = nasaClient.get(Host.API, "/DONKI/" + type.name())
+                .header("content-type", "application/json")
+                .queryString("startDate", from.toString())
+                .queryString("endDate", to.toString());
+
+        return nasaClient.bytes(request, priority)
+                .thenAccept(body -> ingest(type, from, to, ModelReaders.donkiEvents(body, type)));
+    }
+
+    private void ingest(DonkiCatalog type, LocalDate from, LocalDate to, List<DonkiEvent> events) {
+        Catalog catalog = catalogs.get(type);
+        synchronized (catalog) {
+            List<DonkiEvent> changed = new ArrayList<>();
+            for (DonkiEvent event : events) {
+                DonkiEvent previous = catalog.byId.get(event.getId());
+                if (catalog.add(event)) {
+                    changed.add(event);
+                    links.update(previous, event);
+                }
+            }
+            catalog.cover(from, to);
+            if (!to.isBefore(LocalDate.now())) {
+                catalog.syncedAt = System.currentTimeMillis();
+            }
+            append(type, changed);
+            writeCoverage(type, catalog);
+        }
+    }
+
+    private Catalog load(DonkiCatalog type) {
+        Catalog catalog = new Catalog();
+        Path coverage = directory.resolve(type.name() + ".coverage");
+        Path events = directory.resolve(type.name() + ".jsonl");
+        if (!Files.exists(coverage)) {
+            return catalog;
+        }
+        int lines = 0;
+        try {
+            if (Files.exists(events)) {
+                try (BufferedReader reader = Files.newBufferedReader(events, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty()) {
+                            DonkiEvent event = ModelReaders.donkiEvent(line, type);
+                            if (event != null) {
+                                catalog.add(event);
+                            }
+                            lines++;
+                        }
+                    }
+                }
+            }
+            for (String line : Files.readAllLines(coverage, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    String[] span = line.trim().split(" ");
+                    catalog.cover(LocalDate.parse(span[0]), LocalDate.parse(span[1]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Discarding unreadable DONKI store for {}", type, e);
+            return new Catalog();
+        }
+        if (lines > catalog.byId.size()) {
+            compact(type, catalog);
+        }
+        log.info("Loaded {} DONKI {} events covering {}", catalog.byId.size(), type, catalog.covered);
+        return catalog;
+    }
+
+    private void append(DonkiCatalog type, List<DonkiEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(directory.resolve(type.name() + ".jsonl"), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (DonkiEvent event : events) {
+                    writer.write(event.getJson());
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not persist DONKI {} events", type, e);
+        }
+    }
+
+    private void compact(DonkiCatalog type, Catalog catalog) {
+        try {
+            Path tmp = Files.createTempFile(directory, type.name(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (DonkiEvent event : catalog.byTime.values()) {
+                    writer.write(event.getJson());
+                    writer.write('\n');
+                }
+            }
+            Files.move(tmp, directory.resolve(type.name() + ".jsonl"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not compact DONKI {} events", type, e);
+        }
+    }
+
+    private void writeCoverage(DonkiCatalog type, Catalog catalog) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, type.name(), ".tmp");
+            StringBuilder spans = new StringBuilder();
+            catalog.covered.forEach((from, to) -> spans.append(from).append(' ').append(to).append('\n'));
+            Files.write(tmp, spans.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, directory.resolve(type.name() + ".coverage"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist DONKI {} coverage", type, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    /** Events of one catalog; guarded by its own monitor. */
+    private static class Catalog {
+        final Map<String, DonkiEvent> byId = new HashMap<>();
+        final NavigableMap<String, DonkiEvent> byTime = new TreeMap<>();
+        /** Disjoint, non-adjacent spans of covered days: first day to last day, both inclusive. */
+        final NavigableMap<LocalDate, LocalDate> covered = new TreeMap<>();
+        /** When a sync last reached today. */
+        long syncedAt;
+        /** When a query last asked for events, 0 when none did since startup. */
+        long queriedAt;
+
+        void cover(LocalDate from, LocalDate to) {
+            Map.Entry<LocalDate, LocalDate> before = covered.floorEntry(from);
+            if (before != null && !before.getValue().plusDays(1).isBefore(from)) {
+                from = before.getKey();
+                to = to.isAfter(before.getValue()) ? to : before.getValue();
+            }
+            Map.Entry<LocalDate, LocalDate> next;
+            while ((next = covered.ceilingEntry(from)) != null && !next.getKey().isAfter(to.plusDays(1))) {
+                to = to.isAfter(next.getValue()) ? to : next.getValue();
+                covered.remove(next.getKey());
+            }
+            covered.put(from, to);
+        }
+
+        /** The spans between {@code start} and {@code end}, both inclusive, that are not covered. */
+        List<LocalDate[]> gaps(LocalDate start, LocalDate end) {
+            List<LocalDate[]> gaps = new ArrayList<>();
+            LocalDate day = start;
+            Map.Entry<LocalDate, LocalDate> before = covered.floorEntry(start);
+            if (before != null && !before.getValue().isBefore(start)) {
+                day = before.getValue().plusDays(1);
+            }
+            for (Map.Entry<LocalDate, LocalDate> span : covered.tailMap(start, false).entrySet()) {
+                if (day.isAfter(end) || span.getKey().isAfter(end)) {
+                    break;
+                }
+                if (span.getKey().isAfter(day)) {
+                    gaps.add(new LocalDate[]{day, span.getKey().minusDays(1)});
+                }
+                if (!span.getValue().isBefore(day)) {
+                    day = span.getValue().plusDays(1);
+                }
+            }
+            if (!day.isAfter(end)) {
+                gaps.add(new LocalDate[]{day, end});
+            }
+            return gaps;
+        }
+
+        /** Inserts or replaces the event; false when an identical copy was already held. */
+        boolean add(DonkiEvent event) {
+            DonkiEvent previous = byId.put(event.getId(), event);
+            if (previous != null) {
+                byTime.remove(timeKey(previous));
+            }
+            byTime.put(timeKey(event), event);
+            return previous == null || !previous.getJson().equals(event.getJson());
+        }
+
+        private static String timeKey(DonkiEvent event) {
+            return event.getTime() + " " + event.getId();
+        }
+    }
+}
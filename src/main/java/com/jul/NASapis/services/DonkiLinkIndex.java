@@ -0,0 +1,70 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.models.DonkiEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Graph over every event held by the {@link DonkiEventStore}, keyed by activity ID.
+ * An event's own {@code linkedEvents} are its outgoing edges; the reverse edges are indexed here, because
+ * DONKI does not always record a link on both ends (a flare may list its CME while the CME omits the flare).
+ */
+@Component
+public class DonkiLinkIndex {
+    static final int MAX_CHAIN = 200;
+
+    private final Map<String, DonkiEvent> events = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> linkedFrom = new ConcurrentHashMap<>();
+
+    /** Indexes {@code event}, replacing the edges of the {@code previous} version of it, if any. */
+    public void update(DonkiEvent previous, DonkiEvent event) {
+        if (previous != null) {
+            for (String id : previous.getLinkedIds()) {
+                Set<String> sources = linkedFrom.get(id);
+                if (sources != null) {
+                    sources.remove(previous.getId());
+                }
+            }
+        }
+        events.put(event.getId(), event);
+        for (String id : event.getLinkedIds()) {
+            linkedFrom.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(event.getId());
+        }
+    }
+
+    public DonkiEvent get(String id) {
+        return events.get(id);
+    }
+
+    /**
+     * IDs of every event reachable from {@code id} through links in either direction, breadth first and
+     * starting with {@code id} itself; linked IDs that are not held locally are included but not followed.
+     */
+    public List<String> chain(String id) {
+        Set<String> seen = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        seen.add(id);
+        pending.add(id);
+        while (!pending.isEmpty() && seen.size() < MAX_CHAIN) {
+            String current = pending.poll();
+            DonkiEvent event = events.get(current);
+            List<String> neighbours = new ArrayList<>(event == null ? Collections.emptyList() : event.getLinkedIds());
+            neighbours.addAll(linkedFrom.getOrDefault(current, Collections.emptySet()));
+            for (String neighbour : neighbours) {
+                if (seen.add(neighbour) && events.containsKey(neighbour)) {
+                    pending.add(neighbour);
+                }
+            }
+        }
+        return new ArrayList<>(seen);
+    }
+}
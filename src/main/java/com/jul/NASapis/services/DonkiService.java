@@ -0,0 +1,130 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.cache.CachedResponse;
+import com.jul.NASapis.models.DonkiCatalog;
+import com.jul.NASapis.models.DonkiEvent;
+import com.google.gson.stream.JsonWriter;
+import com.jul.NASapis.json.JsonStreams;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DONKI answers built from the {@link DonkiEventStore} rather than fetched: plain date range queries on the
+ * stored catalogs, and the chain of events linked to a CME, which the store's {@link DonkiLinkIndex} resolves
+ * in one call. The catalogs' upstream calls and their stale-while-revalidate caches are declared in the
+ * {@link EndpointRegistry}.
+ */
+@Service
+public class DonkiService {
+    /** Span around a CME that every catalog is synced for before its chain is resolved. */
+    static final int CHAIN_DAYS_BEFORE = 2;
+    static final int CHAIN_DAYS_AFTER = 10;
+
+    private final DonkiEventStore store;
+    private final DonkiLinkIndex links;
+
+    public DonkiService(DonkiEventStore store, DonkiLinkIndex links) {
+        this.store = store;
+        this.links = links;
+    }
+
+    public boolean isStoreEnabled() {
+        return store.isEnabled();
+    }
+
+    /** Events of {@code catalog} between the dates, as DONKI would list them. */
+    public CompletableFuture<CachedResponse> range(DonkiCatalog catalog, LocalDate start, LocalDate end) {
+        return store.range(catalog, start, end).thenApply(events -> {
+            StringBuilder json = new StringBuilder("[");
+            for (DonkiEvent event : events) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(event.getJson());
+            }
+            return new CachedResponse(json.append(']').toString().getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    /**
+     * The CME with every flare, shock, storm, particle event and so on linked to it, directly or through one
+     * another, grouped by catalog. Linked IDs the store does not hold are listed under {@code unresolved}.
+     */
+    public CompletableFuture<CachedResponse> chain(String activityID) {
+        if (!store.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The DONKI event store is disabled");
+        }
+        if (DonkiCatalog.ofId(activityID) != DonkiCatalog.CME || activityID.length() < 10) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, activityID + " is not a CME activity ID");
+        }
+        LocalDate day;
+        try {
+            day = LocalDate.parse(activityID.substring(0, 10));
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, activityID + " is not a CME activity ID", e);
+        }
+
+        List<CompletableFuture<?>> syncs = new ArrayList<>();
+        for (DonkiCatalog catalog : DonkiCatalog.values()) {
+            syncs.add(store.range(catalog, day.minusDays(CHAIN_DAYS_BEFORE), day.plusDays(CHAIN_DAYS_AFTER)));
+        }
+        return CompletableFuture.allOf(syncs.toArray(new CompletableFuture[0])).thenApply(done -> {
+            if (links.get(activityID) == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No CME " + activityID);
+            }
+            return new CachedResponse(chainJson(activityID, links.chain(activityID)));
+        });
+    }
+
+    private byte[] chainJson(String activityID, List<String> chain) {
+        Map<DonkiCatalog, List<DonkiEvent>> linked = new EnumMap<>(DonkiCatalog.class);
+        List<String> unresolved = new ArrayList<>();
+        for (String id : chain.subList(1, chain.size())) {
+            DonkiEvent event = links.get(id);
+            DonkiCatalog catalog = DonkiCatalog.ofId(id);
+            if (event == null || catalog == null) {
+                unresolved.add(id);
+            } else {
+                linked.computeIfAbsent(catalog, missing -> new ArrayList<>()).add(event);
+            }
+        }
+
+        StringWriter json = new StringWriter();
+        try (JsonWriter out = JsonStreams.writer(json, false)) {
+            out.beginObject();
+            out.name("activityID").value(activityID);
+            out.name("event").jsonValue(links.get(activityID).getJson());
+            out.name("linkedEvents").beginObject();
+            for (Map.Entry<DonkiCatalog, List<DonkiEvent>> entry : linked.entrySet()) {
+                out.name(entry.getKey().name()).beginArray();
+                for (DonkiEvent event : entry.getValue()) {
+                    out.jsonValue(event.getJson());
+                }
+                out.endArray();
+            }
+            out.endObject();
+            out.name("unresolved").beginArray();
+            for (String id : unresolved) {
+                out.value(id);
+            }
+            out.endArray();
+            out.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,179 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.cache.LruCache;
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import kong.unirest.GetRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Earth imagery and assets per grid tile.
+ * Coordinates are snapped to a grid of {@code nasa.api.earth.grid-degrees} and the dimension is rounded up to
+ * whole grid cells, so map clients asking for nearly the same spot share one upstream call and one cache entry.
+ * Optionally the eight neighbouring tiles are fetched in the background, ready for when the user pans.
+ */
+@Slf4j
+@Service
+public class EarthTiles {
+    private final NASAClient nasaClient;
+    private final ImageProxy imageProxy;
+    private final double grid;
+    private final boolean prefetch;
+    private final LruCache<String, byte[]> assets;
+    private final Duration assetsTtl;
+    private final ThreadPoolExecutor prefetcher = new ThreadPoolExecutor(1, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(32), runnable -> {
+                Thread thread = new Thread(runnable, "nasa-earth-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    public EarthTiles(NASAClient nasaClient, ImageProxy imageProxy, ApplicationPropertiesConfig config,
+                      MeterRegistry registry) {
+        ApplicationPropertiesConfig.Earth earth = config.getEarth();
+        this.nasaClient = nasaClient;
+        this.imageProxy = imageProxy;
+        this.grid = earth.getGridDegrees();
+        this.prefetch = earth.isPrefetch();
+        this.assets = new LruCache<String, byte[]>(earth.getAssetsCacheSize()).monitor(registry, "earth.assets");
+        this.assetsTtl = earth.getAssetsTtl();
+    }
+
+    public Tile tile(float latitude, float longitude, float dim, String date) {
+        if (grid <= 0) {
+            return new Tile(plain(latitude), plain(longitude), plain(dim), date, 0, 0, 0);
+        }
+        long row = Math.round(latitude / grid);
+        long column = Math.round(longitude / grid);
+        long cells = Math.max(1, (long) Math.ceil(dim / grid - 1e-9));
+        return tile(row, column, cells, date);
+    }
+
+    /**
+     * Only imagery of an explicit past date is final: it alone is kept in the disk cache, and only then are the
+     * neighbours prefetched into it. Without a date NASA answers with the most recent image, which changes.
+     */
+    public void imagery(Tile tile, boolean cacheable, HttpHeaders incoming, HttpServletResponse response,
+                        OutputStream out) throws IOException {
+        imageProxy.stream(imageryRequest(tile), Priority.LOW, cacheable ? tile.key("imagery") : null, incoming, response, out);
+        if (cacheable && prefetch) {
+            for (Tile neighbour : neighbours(tile)) {
+                prefetcher.execute(() -> imageProxy.prefetch(imageryRequest(neighbour), Priority.LOW, neighbour.key("imagery")));
+            }
+        }
+    }
+
+    public CompletableFuture<byte[]> assets(Tile tile) {
+        CompletableFuture<byte[]> result = fetchAssets(tile);
+        if (prefetch) {
+            neighbours(tile).forEach(this::fetchAssets);
+        }
+        return result;
+    }
+
+    private CompletableFuture<byte[]> fetchAssets(Tile tile) {
+        String key = tile.key("assets");
+        byte[] cached = assets.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        GetRequest request = nasaClient.get(Host.API, "/planetary/earth/assets")
+                .header("content-type", "application/json")
+                .queryString("lat", tile.latitude)
+                .queryString("lon", tile.longitude)
+                .queryString("dim", tile.dim)
+                .queryString("date", tile.date);
+
+        return nasaClient.bytes(request, Priority.LOW).thenApply(body -> {
+            assets.put(key, body, assetsTtl);
+            return body;
+        });
+    }
+
+    private GetRequest imageryRequest(Tile tile) {
+        return nasaClient.get(Host.API, "/planetary/earth/imagery/")
+                .header("content-type", MediaType.IMAGE_PNG_VALUE)
+                .header("content-type", MediaType.IMAGE_JPEG_VALUE)
+                .queryString("lat", tile.latitude)
+                .queryString("lon", tile.longitude)
+                .queryString("dim", tile.dim)
+                .queryString("date", tile.date);
+    }
+
+    private List<Tile> neighbours(Tile tile) {
+        List<Tile> neighbours = new ArrayList<>();
+        if (tile.cells == 0) {
+            return neighbours;
+        }
+        for (long dRow = -1; dRow <= 1; dRow++) {
+            for (long dColumn = -1; dColumn <= 1; dColumn++) {
+                if (dRow != 0 || dColumn != 0) {
+                    neighbours.add(tile(tile.row + dRow * tile.cells, tile.column + dColumn * tile.cells, tile.cells, tile.date));
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    private Tile tile(long row, long column, long cells, String date) {
+        return new Tile(snap(row), snap(column), snap(cells), date, row, column, cells);
+    }
+
+    private String snap(long cells) {
+        return plain(BigDecimal.valueOf(cells).multiply(BigDecimal.valueOf(grid)));
+    }
+
+    private static String plain(float value) {
+        return plain(new BigDecimal(Float.toString(value)));
+    }
+
+    private static String plain(BigDecimal value) {
+        return value.stripTrailingZeros().toPlainString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+
+    /** A grid cell; {@code cells} is 0 when tiling is switched off. */
+    public static class Tile {
+        final String latitude;
+        final String longitude;
+        final String dim;
+        final String date;
+        final long row;
+        final long column;
+        final long cells;
+
+        Tile(String latitude, String longitude, String dim, String date, long row, long column, long cells) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.dim = dim;
+            this.date = date;
+            this.row = row;
+            this.column = column;
+            this.cells = cells;
+        }
+
+        String key(String kind) {
+            return "earth/" + kind + "/" + latitude + "/" + longitude + "/" + dim + "/" + date;
+        }
+    }
+}
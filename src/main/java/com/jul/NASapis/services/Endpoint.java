@@ -0,0 +1,161 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.models.DonkiCatalog;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Declaration of one proxied NASA endpoint: the host and path it calls, how the client's parameters map onto
+ * the upstream's, and the cache, priority and concurrency defaults of its calls, which
+ * {@code nasa.api.endpoints.<id>} can override. {@link EndpointProxy} runs every endpoint the same way.
+ */
+@Getter
+public class Endpoint {
+    /** Fallback for a date parameter the client left out. */
+    public static final Function<Map<String, Object>, Object> TODAY = params -> LocalDate.now();
+
+    private final String id;
+    private final Host host;
+    private final String path;
+    private final List<Param> params = new ArrayList<>();
+    private Priority priority = Priority.NORMAL;
+    private Duration freshFor = Duration.ZERO;
+    private Duration staleFor = Duration.ZERO;
+    private Duration staleIfError = Duration.ZERO;
+    private int cacheSize;
+    private int maxConcurrent;
+    private boolean precompressed;
+    private DonkiCatalog store;
+    private Predicate<Map<String, Object>> storeApplies = params -> true;
+
+    public Endpoint(String id, Host host, String path) {
+        this.id = id;
+        this.host = host;
+        this.path = path;
+    }
+
+    /** Fallback for a date parameter: {@code days} before the date parameter {@code other}, declared earlier. */
+    public static Function<Map<String, Object>, Object> daysBefore(String other, int days) {
+        return params -> ((LocalDate) params.get(other)).minusDays(days);
+    }
+
+    /** Passed on as the upstream's {@code upstreamName} when the client gave it; arrays are joined with commas. */
+    public Endpoint param(String name, String upstreamName) {
+        params.add(new Param(name, upstreamName, null, false, false));
+        return this;
+    }
+
+    /**
+     * A YYYY-MM-DD parameter, answered with a 400 when malformed. When the client left it out, {@code fallback}
+     * computes it from the parameters declared before it.
+     */
+    public Endpoint date(String name, String upstreamName, Function<Map<String, Object>, Object> fallback) {
+        params.add(new Param(name, upstreamName, fallback, true, false));
+        return this;
+    }
+
+    /** Substituted for {@code {name}} in the path. */
+    public Endpoint pathVariable(String name) {
+        params.add(new Param(name, name, null, false, true));
+        return this;
+    }
+
+    public Endpoint priority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /** Answers are kept in a stale-while-revalidate cache of {@code size} entries; without one nothing is cached. */
+    public Endpoint cache(Duration freshFor, Duration staleFor, Duration staleIfError, int size) {
+        this.freshFor = freshFor;
+        this.staleFor = staleFor;
+        this.staleIfError = staleIfError;
+        this.cacheSize = size;
+        return this;
+    }
+
+    /** Upstream calls in flight for this endpoint beyond which callers get a 503; 0 for no limit. */
+    public Endpoint maxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        return this;
+    }
+
+    /**
+     * Answers are served from the {@code EncodedResponseCache}, serialized and gzipped once per distinct upstream
+     * body; only worth it for cached endpoints.
+     */
+    public Endpoint precompressed() {
+        this.precompressed = true;
+        return this;
+    }
+
+    /**
+     * Range queries are answered from the {@link DonkiEventStore} copy of {@code catalog}, when it is enabled and
+     * {@code applies} to the resolved parameters. The range is read from the {@code start_date} and
+     * {@code end_date} date parameters.
+     */
+    public Endpoint store(DonkiCatalog catalog, Predicate<Map<String, Object>> applies) {
+        this.store = catalog;
+        this.storeApplies = applies;
+        return this;
+    }
+
+    public Endpoint store(DonkiCatalog catalog) {
+        return store(catalog, params -> true);
+    }
+
+    public boolean isCached() {
+        return cacheSize > 0 && freshFor.plus(staleFor).compareTo(Duration.ZERO) > 0;
+    }
+
+    /** Applies the configured overrides; unset settings keep the declared defaults. */
+    void override(ApplicationPropertiesConfig.EndpointPolicy policy) {
+        if (policy.getFreshFor() != null) {
+            freshFor = policy.getFreshFor();
+        }
+        if (policy.getStaleFor() != null) {
+            staleFor = policy.getStaleFor();
+        }
+        if (policy.getStaleIfError() != null) {
+            staleIfError = policy.getStaleIfError();
+        }
+        if (policy.getCacheSize() != null) {
+            cacheSize = policy.getCacheSize();
+        }
+        if (policy.getMaxConcurrent() != null) {
+            maxConcurrent = policy.getMaxConcurrent();
+        }
+        if (policy.getPriority() != null) {
+            priority = policy.getPriority();
+        }
+        if (policy.getPrecompressed() != null) {
+            precompressed = policy.getPrecompressed();
+        }
+    }
+
+    @Getter
+    static class Param {
+        private final String name;
+        private final String upstreamName;
+        private final Function<Map<String, Object>, Object> fallback;
+        private final boolean date;
+        private final boolean pathVariable;
+
+        Param(String name, String upstreamName, Function<Map<String, Object>, Object> fallback, boolean date,
+              boolean pathVariable) {
+            this.name = name;
+            this.upstreamName = upstreamName;
+            this.fallback = fallback;
+            this.date = date;
+            this.pathVariable = pathVariable;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.cache.CachedResponse;
+import com.jul.NASapis.cache.SwrCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import kong.unirest.GetRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriUtils;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The one pipeline every {@link Endpoint} of the {@link EndpointRegistry} runs through: parameters are resolved
+ * and mapped, DONKI range queries go to the event store where the endpoint allows it, and everything else is
+ * an upstream call limited to the endpoint's concurrency, sent at its priority and kept in its own
+ * stale-while-revalidate cache keyed by the normalized upstream URL.
+ */
+@Service
+public class EndpointProxy {
+    private final NASAClient nasaClient;
+    private final EndpointRegistry registry;
+    private final DonkiService donkiService;
+    private final Map<String, SwrCache> caches = new HashMap<>();
+    private final Map<String, Semaphore> limits = new HashMap<>();
+
+    public EndpointProxy(NASAClient nasaClient, EndpointRegistry registry, DonkiService donkiService,
+                         MeterRegistry meterRegistry) {
+        this.nasaClient = nasaClient;
+        this.registry = registry;
+        this.donkiService = donkiService;
+        for (Endpoint endpoint : registry.all()) {
+            if (endpoint.isCached()) {
+                caches.put(endpoint.getId(), new SwrCache(endpoint.getCacheSize(), endpoint.getFreshFor(),
+                        endpoint.getStaleFor(), endpoint.getStaleIfError()).monitor(meterRegistry, endpoint.getId()));
+            }
+            if (endpoint.getMaxConcurrent() > 0) {
+                limits.put(endpoint.getId(), new Semaphore(endpoint.getMaxConcurrent()));
+            }
+        }
+    }
+
+    /** Name and value pairs, in the order given, leaving out null values. */
+    public static Map<String, Object> params(Object... namesAndValues) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            if (namesAndValues[i + 1] != null) {
+                params.put((String) namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+        return params;
+    }
+
+    public CompletableFuture<CachedResponse> call(String id, Map<String, Object> params) {
+        Endpoint endpoint = registry.get(id);
+        Map<String, Object> resolved = resolve(endpoint, params);
+
+        if (endpoint.getStore() != null && donkiService.isStoreEnabled() && endpoint.getStoreApplies().test(resolved)) {
+            return donkiService.range(endpoint.getStore(), (LocalDate) resolved.get("start_date"),
+                    (LocalDate) resolved.get("end_date"));
+        }
+
+        // every load builds its own request, as sending one signs it with an api_key
+        Supplier<CompletableFuture<byte[]>> load = () -> limited(endpoint,
+                () -> nasaClient.bytes(request(endpoint, resolved), endpoint.getPriority()));
+        SwrCache cache = caches.get(id);
+        if (cache == null) {
+            return load.get().thenApply(CachedResponse::new);
+        }
+        return cache.get(NASAClient.normalize(request(endpoint, resolved).getUrl()), load);
+    }
+
+    /** How long clients may reuse an answer of the endpoint; null when its answers are not cached. */
+    public CacheControl cacheControl(String id, CachedResponse cached) {
+        SwrCache cache = caches.get(id);
+        if (cache == null) {
+            return null;
+        }
+        CacheControl cacheControl = CacheControl.maxAge(cache.remainingFreshSeconds(cached), TimeUnit.SECONDS);
+        return cache.getStaleFor().isZero() ? cacheControl : cacheControl.staleWhileRevalidate(cache.getStaleFor());
+    }
+
+    /** The client's parameters with dates parsed and fallbacks filled in, in declaration order. */
+    private static Map<String, Object> resolve(Endpoint endpoint, Map<String, Object> params) {
+        Map<String, Object> resolved = new LinkedHashMap<>(params);
+        for (Endpoint.Param param : endpoint.getParams()) {
+            Object value = params.get(param.getName());
+            if (value == null && param.getFallback() != null) {
+                value = param.getFallback().apply(resolved);
+            } else if (value != null && param.isDate() && !(value instanceof LocalDate)) {
+                try {
+                    value = LocalDate.parse(value.toString());
+                } catch (DateTimeParseException e) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, param.getName() + " must be YYYY-MM-DD", e);
+                }
+            }
+            if (value == null) {
+                resolved.remove(param.getName());
+            } else {
+                resolved.put(param.getName(), value);
+            }
+        }
+        return resolved;
+    }
+
+    private GetRequest request(Endpoint endpoint, Map<String, Object> resolved) {
+        String path = endpoint.getPath();
+        for (Endpoint.Param param : endpoint.getParams()) {
+            Object value = resolved.get(param.getName());
+            if (param.isPathVariable()) {
+                if (value == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, param.getName() + " is required");
+                }
+                path = path.replace("{" + param.getName() + "}", UriUtils.encodePathSegment(text(value), StandardCharsets.UTF_8));
+            }
+        }
+
+        GetRequest request = nasaClient.get(endpoint.getHost(), path)
+                .header("content-type", "application/json");
+        for (Endpoint.Param param : endpoint.getParams()) {
+            Object value = resolved.get(param.getName());
+            if (!param.isPathVariable() && value != null) {
+                request.queryString(param.getUpstreamName(), text(value));
+            }
+        }
+        return request;
+    }
+
+    private static String text(Object value) {
+        if (value.getClass().isArray()) {
+            StringJoiner joined = new StringJoiner(",");
+            for (int i = 0; i < Array.getLength(value); i++) {
+                joined.add(String.valueOf(Array.get(value, i)));
+            }
+            return joined.toString();
+        }
+        return value.toString();
+    }
+
+    private CompletableFuture<byte[]> limited(Endpoint endpoint, Supplier<CompletableFuture<byte[]>> call) {
+        Semaphore limit = limits.get(endpoint.getId());
+        if (limit == null) {
+            return call.get();
+        }
+        if (!limit.tryAcquire()) {
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many calls in flight for " + endpoint.getId() + ", try again later"));
+        }
+        try {
+            return call.get().whenComplete((body, error) -> limit.release());
+        } catch (RuntimeException e) {
+            limit.release();
+            throw e;
+        }
+    }
+}
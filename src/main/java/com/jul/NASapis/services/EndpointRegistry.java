@@ -0,0 +1,117 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.models.DonkiCatalog;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Every NASA endpoint proxied through the {@link EndpointProxy}, by ID.
+ * The DONKI catalogs share the {@code nasa.api.donki} cache settings and default a missing start date to
+ * 30 days before the end date, as DONKI itself does.
+ */
+@Component
+public class EndpointRegistry {
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private final ApplicationPropertiesConfig.Donki donki;
+
+    public EndpointRegistry(ApplicationPropertiesConfig config) {
+        this.donki = config.getDonki();
+
+        add(new Endpoint("apod", Host.API, "/planetary/apod")
+                .param("concept_tags", "concept_tags")
+                .param("date", "date")
+                .param("hd", "hd")
+                .param("thumbs", "thumbs")
+                .priority(Priority.HIGH));
+        add(new Endpoint("neo-browse", Host.API, "/neo/rest/v1/neo/browse/")
+                .priority(Priority.LOW));
+
+        add(donki("donki-cme", "/DONKI/CME").store(DonkiCatalog.CME));
+        add(donki("donki-cme-analysis", "/DONKI/CMEAnalysis")
+                .param("mostAccurateOnly", "mostAccurateOnly")
+                .param("completeEntryOnly", "completeEntryOnly")
+                .param("speed", "speed")
+                .param("halfAngle", "halfAngle")
+                .param("catalog", "catalog")
+                .param("keyword", "keyword"));
+        add(donki("donki-gst", "/DONKI/GST").store(DonkiCatalog.GST));
+        add(donki("donki-ips", "/DONKI/IPS")
+                .param("location", "location")
+                .param("catalog", "catalog")
+                .store(DonkiCatalog.IPS, params -> "ALL".equals(params.get("location")) && "ALL".equals(params.get("catalog"))));
+        add(donki("donki-flr", "/DONKI/FLR").store(DonkiCatalog.FLR));
+        add(donki("donki-sep", "/DONKI/SEP").store(DonkiCatalog.SEP));
+        add(donki("donki-mpc", "/DONKI/MPC").store(DonkiCatalog.MPC));
+        add(donki("donki-rbe", "/DONKI/RBE").store(DonkiCatalog.RBE));
+        add(donki("donki-hss", "/DONKI/HSS").store(DonkiCatalog.HSS));
+        add(donki("donki-wsa-enlil-simulations", "/DONKI/WSAEnlilSimulations"));
+        add(donki("donki-notifications", "/DONKI/notifications")
+                .param("type", "type"));
+
+        for (String collection : new String[]{"natural", "enhanced"}) {
+            add(epic("epic-" + collection, "/api/" + collection));
+            add(epic("epic-" + collection + "-date", "/api/" + collection + "/date/{date}")
+                    .pathVariable("date"));
+            add(epic("epic-" + collection + "-all", "/api/" + collection + "/all"));
+            add(epic("epic-" + collection + "-available", "/api/" + collection + "/available"));
+        }
+
+        add(new Endpoint("eonet-events", Host.EONET, "/api/v3/events")
+                .param("sourceID", "source")
+                .param("status", "status")
+                .param("limit", "limit")
+                .param("days", "days")
+                .param("start", "start")
+                .param("end", "end")
+                .param("magnitudeID", "magID")
+                .param("magMin", "magMin")
+                .param("magMax", "magMax")
+                .param("bbox", "bbox")
+                .param("category", "category"));
+
+        config.getEndpoints().forEach((id, policy) -> {
+            Endpoint endpoint = endpoints.get(id);
+            if (endpoint == null) {
+                throw new IllegalStateException("nasa.api.endpoints." + id + " configures an unknown endpoint, known are "
+                        + endpoints.keySet());
+            }
+            endpoint.override(policy);
+        });
+    }
+
+    private Endpoint donki(String id, String path) {
+        return new Endpoint(id, Host.API, path)
+                .date("end_date", "endDate", Endpoint.TODAY)
+                .date("start_date", "startDate", Endpoint.daysBefore("end_date", 30))
+                .cache(donki.getFreshFor(), donki.getStaleFor(), donki.getStaleIfError(), donki.getCacheSize());
+    }
+
+    /** EPIC publishes new images a few times a day, so its listings are cached and served precompressed. */
+    private static Endpoint epic(String id, String path) {
+        return new Endpoint(id, Host.EPIC, path)
+                .cache(Duration.ofMinutes(10), Duration.ofHours(1), Duration.ofDays(1), 500)
+                .precompressed();
+    }
+
+    private void add(Endpoint endpoint) {
+        endpoints.put(endpoint.getId(), endpoint);
+    }
+
+    public Endpoint get(String id) {
+        Endpoint endpoint = endpoints.get(id);
+        if (endpoint == null) {
+            throw new IllegalArgumentException("No endpoint " + id);
+        }
+        return endpoint;
+    }
+
+    public Collection<Endpoint> all() {
+        return Collections.unmodifiableCollection(endpoints.values());
+    }
+}
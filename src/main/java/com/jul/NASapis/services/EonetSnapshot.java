@@ -0,0 +1,346 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.json.ModelReaders;
+import com.jul.NASapis.models.EONETGeometry;
+import com.jul.NASapis.models.EONETModel;
+import kong.unirest.GetRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local copy of the EONET events of the last {@code snapshotDays} plus every open event, so map overlays can
+ * query by bounding box, date, magnitude, category and source without a call to EONET.
+ * Geometries are indexed on a grid of {@code gridDegrees} cells and by observation date. The snapshot is
+ * refreshed in the background with the events observed in the last days and the currently open ones, and
+ * rebuilt as an immutable index, so queries never wait for a refresh.
+ */
+@Slf4j
+@Service
+public class EonetSnapshot {
+    static final String EVENTS_PATH = "/api/v3/events";
+    /** Polygons spanning more cells than this are kept out of the grid and checked on every bbox query. */
+    static final int MAX_CELLS_PER_GEOMETRY = 10000;
+
+    private final NASAClient nasaClient;
+    private final boolean enabled;
+    private final int snapshotDays;
+    private final int refreshDays;
+    private final double gridDegrees;
+    private final Map<String, EONETModel> events = new HashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "eonet-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Index index;
+
+    public EonetSnapshot(NASAClient nasaClient, ApplicationPropertiesConfig config) {
+        ApplicationPropertiesConfig.Eonet eonet = config.getEonet();
+        this.nasaClient = nasaClient;
+        this.enabled = eonet.isSnapshotEnabled();
+        this.snapshotDays = eonet.getSnapshotDays();
+        this.gridDegrees = eonet.getGridDegrees() > 0 ? eonet.getGridDegrees() : 1;
+        long interval = eonet.getRefreshInterval().toMillis();
+        this.refreshDays = (int) Math.max(2, TimeUnit.MILLISECONDS.toDays(interval) + 2);
+        if (enabled) {
+            refresher.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Whether the snapshot holds every event a query may match: with a lower date bound inside the snapshot
+     * window, or without one when only open events are asked for.
+     */
+    public boolean covers(String status, LocalDate from) {
+        if (index == null) {
+            return false;
+        }
+        if (from == null) {
+            return status == null || "open".equals(status);
+        }
+        return !from.isBefore(LocalDate.now().minusDays(snapshotDays - 1));
+    }
+
+    /**
+     * Events matching every given filter (nulls match anything), most recently observed first.
+     * {@code bbox} is min lon, max lat, max lon, min lat, as EONET takes it.
+     */
+    public List<EONETModel> query(Collection<String> sources, Collection<String> categories, String status,
+                                  LocalDate from, LocalDate to, Float magMin, Float magMax, Float[] bbox, Integer limit) {
+        Index current = index;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        Collection<EONETModel> candidates;
+        if (bbox != null) {
+            candidates = current.within(bbox[0], bbox[3], bbox[2], bbox[1]);
+        } else if (from != null || to != null) {
+            candidates = current.between(from, to);
+        } else {
+            candidates = current.events;
+        }
+
+        String openOrClosed = status == null ? "open" : status;
+        List<EONETModel> matches = new ArrayList<>();
+        for (EONETModel event : candidates) {
+            if (("open".equals(openOrClosed) && event.getClosed() != null)
+                    || ("closed".equals(openOrClosed) && event.getClosed() == null)
+                    || (sources != null && Collections.disjoint(sources, event.getSources()))
+                    || (categories != null && Collections.disjoint(categories, event.getCategories()))) {
+                continue;
+            }
+            if (matchesGeometry(event, from, to, magMin, magMax, bbox)) {
+                matches.add(event);
+            }
+        }
+        matches.sort(Comparator.comparing(EonetSnapshot::latestDate, Comparator.nullsLast(Comparator.reverseOrder())));
+        return limit != null && limit < matches.size() ? matches.subList(0, limit) : matches;
+    }
+
+    /** At least one observation has to satisfy the date, magnitude and bbox filters at once. */
+    private static boolean matchesGeometry(EONETModel event, LocalDate from, LocalDate to,
+                                           Float magMin, Float magMax, Float[] bbox) {
+        if (from == null && to == null && magMin == null && magMax == null && bbox == null) {
+            return true;
+        }
+        String fromKey = from == null ? null : from.toString();
+        String toKey = to == null ? null : to.plusDays(1).toString();
+        for (EONETGeometry geometry : event.getGeometry()) {
+            String date = geometry.getDate();
+            if ((fromKey != null && (date == null || date.compareTo(fromKey) < 0))
+                    || (toKey != null && (date == null || date.compareTo(toKey) >= 0))) {
+                continue;
+            }
+            Double magnitude = geometry.getMagnitudeValue();
+            if ((magMin != null && (magnitude == null || magnitude < magMin))
+                    || (magMax != null && (magnitude == null || magnitude > magMax))) {
+                continue;
+            }
+            if (bbox == null || intersects(bounds(geometry), bbox[0], bbox[3], bbox[2], bbox[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fetches the events observed in the last days and every open event. An event that closes without a new
+     * observation only shows by leaving the open list, so every event the snapshot still has open but EONET no
+     * longer lists as open is fetched on its own for its closed date, and dropped when that fails.
+     */
+    private void refresh() {
+        CompletableFuture<List<EONETModel>> recent = fetch(events(index == null ? snapshotDays : refreshDays, "all"));
+        CompletableFuture<List<EONETModel>> open = fetch(nasaClient.get(Host.EONET, EVENTS_PATH).queryString("status", "open"));
+        try {
+            List<EONETModel> fetched = new ArrayList<>(recent.join());
+            List<EONETModel> openNow = open.join();
+            fetched.addAll(openNow);
+
+            Set<String> stillOpen = new HashSet<>();
+            openNow.forEach(event -> stillOpen.add(event.getId()));
+            Set<String> dropped = new HashSet<>();
+            for (String id : noLongerOpen(fetched, stillOpen)) {
+                try {
+                    EONETModel event = fetchEvent(id).join();
+                    if (id.equals(event.getId())) {
+                        fetched.add(event);
+                    } else {
+                        dropped.add(id);
+                    }
+                } catch (RuntimeException e) {
+                    log.debug("Fetching EONET event {} failed, dropping it: {}", id, e.toString());
+                    dropped.add(id);
+                }
+            }
+            merge(fetched, dropped);
+        } catch (RuntimeException e) {
+            log.warn("Refreshing the EONET snapshot failed: {}", e.toString());
+        }
+    }
+
+    /** IDs of the events that are open in the snapshot, or as just fetched, but missing from {@code stillOpen}. */
+    private synchronized List<String> noLongerOpen(List<EONETModel> fetched, Set<String> stillOpen) {
+        Map<String, EONETModel> latest = new HashMap<>(events);
+        fetched.stream().filter(event -> event.getId() != null).forEach(event -> latest.put(event.getId(), event));
+        List<String> ids = new ArrayList<>();
+        latest.forEach((id, event) -> {
+            if (event.getClosed() == null && !stillOpen.contains(id)) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    private CompletableFuture<EONETModel> fetchEvent(String id) {
+        GetRequest request = nasaClient.get(Host.EONET, EVENTS_PATH + "/" + UriUtils.encodePathSegment(id, StandardCharsets.UTF_8));
+        return nasaClient.bytes(request, Priority.LOW).thenApply(ModelReaders::eonetEvent);
+    }
+
+    private GetRequest events(int days, String status) {
+        return nasaClient.get(Host.EONET, EVENTS_PATH)
+                .queryString("status", status)
+                .queryString("days", days);
+    }
+
+    private CompletableFuture<List<EONETModel>> fetch(GetRequest request) {
+        return nasaClient.bytes(request, Priority.LOW).thenApply(ModelReaders::eonetEvents);
+    }
+
+    /**
+     * Replaces events by ID, removes {@code dropped}, drops closed events that left the window and swaps in a
+     * rebuilt index.
+     */
+    private synchronized void merge(List<EONETModel> fetched, Set<String> dropped) {
+        for (EONETModel event : fetched) {
+            if (event.getId() != null) {
+                events.put(event.getId(), event);
+            }
+        }
+        events.keySet().removeAll(dropped);
+        String oldest = LocalDate.now().minusDays(snapshotDays - 1).toString();
+        events.values().removeIf(event -> event.getClosed() != null
+                && (latestDate(event) == null || latestDate(event).compareTo(oldest) < 0));
+        index = new Index(new ArrayList<>(events.values()), gridDegrees);
+        log.debug("EONET snapshot holds {} events", events.size());
+    }
+
+    private static String latestDate(EONETModel event) {
+        String latest = null;
+        for (EONETGeometry geometry : event.getGeometry()) {
+            if (geometry.getDate() != null && (latest == null || geometry.getDate().compareTo(latest) > 0)) {
+                latest = geometry.getDate();
+            }
+        }
+        return latest;
+    }
+
+    /** min lon, min lat, max lon, max lat of the geometry's coordinates, or null when it has none. */
+    private static double[] bounds(EONETGeometry geometry) {
+        double[] bounds = null;
+        for (double[] point : geometry.getCoordinates()) {
+            if (bounds == null) {
+                bounds = new double[]{point[0], point[1], point[0], point[1]};
+            } else {
+                bounds[0] = Math.min(bounds[0], point[0]);
+                bounds[1] = Math.min(bounds[1], point[1]);
+                bounds[2] = Math.max(bounds[2], point[0]);
+                bounds[3] = Math.max(bounds[3], point[1]);
+            }
+        }
+        return bounds;
+    }
+
+    private static boolean intersects(double[] bounds, double minLon, double minLat, double maxLon, double maxLat) {
+        return bounds != null && bounds[0] <= maxLon && bounds[2] >= minLon && bounds[1] <= maxLat && bounds[3] >= minLat;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /** Immutable grid and date index over one generation of the snapshot. */
+    private static class Index {
+        final List<EONETModel> events;
+        final double gridDegrees;
+        final Map<Long, List<EONETModel>> cells = new HashMap<>();
+        final List<EONETModel> wide = new ArrayList<>();
+        final NavigableMap<String, List<EONETModel>> byDate = new TreeMap<>();
+
+        Index(List<EONETModel> events, double gridDegrees) {
+            this.events = events;
+            this.gridDegrees = gridDegrees;
+            for (EONETModel event : events) {
+                Set<Long> eventCells = new LinkedHashSet<>();
+                boolean isWide = false;
+                for (EONETGeometry geometry : event.getGeometry()) {
+                    if (geometry.getDate() != null) {
+                        byDate.computeIfAbsent(geometry.getDate(), date -> new ArrayList<>()).add(event);
+                    }
+                    double[] bounds = bounds(geometry);
+                    if (bounds == null || isWide) {
+                        continue;
+                    }
+                    int minX = column(bounds[0]), minY = row(bounds[1]), maxX = column(bounds[2]), maxY = row(bounds[3]);
+                    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_GEOMETRY) {
+                        isWide = true;
+                        continue;
+                    }
+                    for (int x = minX; x <= maxX; x++) {
+                        for (int y = minY; y <= maxY; y++) {
+                            eventCells.add(cell(x, y));
+                        }
+                    }
+                }
+                if (isWide) {
+                    wide.add(event);
+                } else {
+                    eventCells.forEach(cell -> cells.computeIfAbsent(cell, key -> new ArrayList<>()).add(event));
+                }
+            }
+        }
+
+        /** Events with a geometry in a cell the box touches; callers still check the exact bounds. */
+        Collection<EONETModel> within(double minLon, double minLat, double maxLon, double maxLat) {
+            Set<EONETModel> found = new LinkedHashSet<>(wide);
+            int minX = column(minLon), minY = row(minLat), maxX = column(maxLon), maxY = row(maxLat);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    List<EONETModel> inCell = cells.get(cell(x, y));
+                    if (inCell != null) {
+                        found.addAll(inCell);
+                    }
+                }
+            }
+            return found;
+        }
+
+        /** Events observed on a day between {@code from} and {@code to}, both inclusive and optional. */
+        Collection<EONETModel> between(LocalDate from, LocalDate to) {
+            NavigableMap<String, List<EONETModel>> range = byDate;
+            if (from != null) {
+                range = range.tailMap(from.toString(), true);
+            }
+            if (to != null) {
+                range = range.headMap(to.plusDays(1).toString(), false);
+            }
+            Set<EONETModel> found = new LinkedHashSet<>();
+            range.values().forEach(found::addAll);
+            return found;
+        }
+
+        private int column(double lon) {
+            return (int) Math.floor((Math.max(-180, Math.min(180, lon)) + 180) / gridDegrees);
+        }
+
+        private int row(double lat) {
+            return (int) Math.floor((Math.max(-90, Math.min(90, lat)) + 90) / gridDegrees);
+        }
+
+        private static long cell(int x, int y) {
+            return ((long) x << 32) | (y & 0xffffffffL);
+        }
+    }
+}
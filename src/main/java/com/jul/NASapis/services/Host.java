@@ -0,0 +1,22 @@
+package com.jul.NASapis.services;
+
+/** The NASA hosts we call. Where each one is actually reached is configured under {@code nasa.api.upstream}. */
+public enum Host {
+    API("api.nasa.gov"),
+    EPIC("epic.gsfc.nasa.gov"),
+    EONET("eonet.sci.gsfc.nasa.gov");
+
+    private final String name;
+
+    Host(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOrigin() {
+        return "https://" + name;
+    }
+}
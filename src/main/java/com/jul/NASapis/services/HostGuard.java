@@ -0,0 +1,258 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kong.unirest.HttpResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Isolation for one upstream host: a bulkhead that caps the calls in flight against it, a circuit breaker
+ * that fails calls fast while most recent calls failed, and the recent latencies used to time hedged calls.
+ * A call fails when it throws or answers with a 5xx; 4xx answers (including quota errors) say nothing
+ * about the host's health.
+ * Every call is timed as {@code nasa.upstream.requests}, tagged with the host and its outcome.
+ */
+class HostGuard {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int LATENCY_SAMPLES = 256;
+
+    private final String host;
+    private final ApplicationPropertiesConfig.Resilience settings;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore bulkhead;
+    private final boolean[] outcomes;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private final MeterRegistry registry;
+    private final DistributionSummary responseSize;
+    private final Counter rejectedOpen;
+    private final Counter rejectedFull;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean trialInFlight;
+    private int calls;
+    private int failures;
+    private int next;
+    private int latencyCount;
+    private int latencyNext;
+
+    HostGuard(String host, ApplicationPropertiesConfig.Resilience settings, ScheduledExecutorService scheduler,
+              MeterRegistry registry) {
+        this.host = host;
+        this.settings = settings;
+        this.scheduler = scheduler;
+        this.bulkhead = new Semaphore(settings.getMaxConcurrentPerHost());
+        this.outcomes = new boolean[Math.max(1, settings.getBreakerWindow())];
+        this.registry = registry;
+
+        this.responseSize = DistributionSummary.builder("nasa.upstream.response.size")
+                .description("Size of buffered upstream response bodies")
+                .baseUnit("bytes")
+                .tag("host", host)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.rejectedOpen = rejected("circuit_open");
+        this.rejectedFull = rejected("bulkhead_full");
+        Gauge.builder("nasa.upstream.inflight", bulkhead, permits -> settings.getMaxConcurrentPerHost() - permits.availablePermits())
+                .description("Calls in flight against the host")
+                .tag("host", host)
+                .register(registry);
+        Gauge.builder("nasa.upstream.circuit.state", this, guard -> guard.state().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half open")
+                .tag("host", host)
+                .register(registry);
+    }
+
+    private Counter rejected(String reason) {
+        return Counter.builder("nasa.upstream.rejected")
+                .description("Calls refused without reaching the host")
+                .tags("host", host, "reason", reason)
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code exchange} inside the bulkhead and breaker. With {@code hedge}, a second identical exchange is
+     * started once the first has taken longer than the configured latency percentile, and the first to answer wins.
+     */
+    <T> CompletableFuture<HttpResponse<T>> call(Supplier<CompletableFuture<HttpResponse<T>>> exchange, boolean hedge) {
+        try {
+            enter();
+        } catch (ResponseStatusException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        attempt(exchange, result, pending);
+
+        long delay = hedge ? hedgeDelayMillis() : -1;
+        if (delay >= 0) {
+            scheduler.schedule(() -> {
+                if (!result.isDone() && state() == State.CLOSED && bulkhead.tryAcquire()) {
+                    pending.incrementAndGet();
+                    attempt(exchange, result, pending);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /** The first attempt to answer completes {@code result}; it only fails once every attempt has failed. */
+    private <T> void attempt(Supplier<CompletableFuture<HttpResponse<T>>> exchange,
+                             CompletableFuture<HttpResponse<T>> result, AtomicInteger pending) {
+        long started = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> call;
+        try {
+            call = exchange.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((response, error) -> {
+            Object body = error == null ? response.getBody() : null;
+            leave(error == null ? response.getStatus() : 0, System.nanoTime() - started,
+                    body instanceof byte[] ? ((byte[]) body).length : -1);
+            if (error == null) {
+                result.complete(response);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    /**
+     * Blocking counterpart of {@link #call}: takes a bulkhead permit or throws 503; {@link #leave}, or
+     * {@link #abandon} when the call is never made, must follow.
+     */
+    void enter() {
+        if (!allow()) {
+            rejectedOpen.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, host + " is failing, try again later");
+        }
+        if (!bulkhead.tryAcquire()) {
+            cancelTrial();
+            rejectedFull.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many calls in flight to " + host);
+        }
+    }
+
+    /** {@code status} is 0 when the call failed without an answer, {@code bytes} negative when the size is unknown. */
+    void leave(int status, long nanos, long bytes) {
+        bulkhead.release();
+        Timer.builder("nasa.upstream.requests")
+                .description("Calls to NASA upstreams")
+                .tags("host", host, "outcome", outcome(status))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (bytes >= 0) {
+            responseSize.record(bytes);
+        }
+        synchronized (this) {
+            latencies[latencyNext] = nanos;
+            latencyNext = (latencyNext + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        }
+        release(status > 0 && status < 500);
+    }
+
+    /** Gives back the permit of a call that was admitted but never made, without counting it either way. */
+    void abandon() {
+        bulkhead.release();
+        cancelTrial();
+    }
+
+    private static String outcome(int status) {
+        if (status == 0) {
+            return "ERROR";
+        }
+        if (status >= 500) {
+            return "SERVER_ERROR";
+        }
+        return status >= 400 ? "CLIENT_ERROR" : "SUCCESS";
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private synchronized boolean allow() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntil) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    private synchronized void cancelTrial() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    private synchronized void release(boolean success) {
+        if (state == State.HALF_OPEN) {
+            if (!trialInFlight) {
+                return;
+            }
+            trialInFlight = false;
+            if (success) {
+                state = State.CLOSED;
+                calls = failures = next = 0;
+            } else {
+                open();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        if (calls == outcomes.length) {
+            failures -= outcomes[next] ? 0 : 1;
+        } else {
+            calls++;
+        }
+        outcomes[next] = success;
+        failures += success ? 0 : 1;
+        next = (next + 1) % outcomes.length;
+        if (calls >= settings.getBreakerMinCalls() && failures >= settings.getBreakerFailureRate() * calls) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + settings.getBreakerOpenFor().toMillis();
+        calls = failures = next = 0;
+    }
+
+    /** The configured percentile of the recent latencies, or -1 while there are too few samples to judge. */
+    private synchronized long hedgeDelayMillis() {
+        if (latencyCount < 20) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.min(latencyCount - 1, Math.floor(settings.getHedgePercentile() * latencyCount));
+        return Math.max(settings.getHedgeMinDelay().toMillis(), TimeUnit.NANOSECONDS.toMillis(sorted[index]));
+    }
+}
@@ -0,0 +1,273 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.cache.ImageDiskCache;
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import kong.unirest.HttpRequest;
+import kong.unirest.RawResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Relays upstream images to the client through a fixed size buffer, so an image never sits on the heap as a whole.
+ * Range and If-Range are forwarded upstream; when the upstream ignores them and sends the full image,
+ * a single byte range is cut out of the stream here instead.
+ * Images with a cache key are written to the {@link ImageDiskCache} while they are relayed, and later
+ * requests are copied from disk through the same kind of small buffer, without touching NASA.
+ */
+@Slf4j
+@Service
+public class ImageProxy {
+    private static final List<String> FORWARDED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_RANGE,
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL);
+
+    private final NASAClient nasaClient;
+    private final ImageDiskCache imageCache;
+    private final int bufferSize;
+    private final boolean cacheEnabled;
+
+    public ImageProxy(NASAClient nasaClient, ImageDiskCache imageCache, ApplicationPropertiesConfig config) {
+        this.nasaClient = nasaClient;
+        this.imageCache = imageCache;
+        this.bufferSize = config.getClient().getStreamBufferSize();
+        this.cacheEnabled = config.getImageCache().isEnabled();
+    }
+
+    /**
+     * @param cacheKey
+     * identifies an immutable image; null streams without caching
+     */
+    public void stream(HttpRequest<?> request, Priority priority, String cacheKey, HttpHeaders incoming,
+                       HttpServletResponse response, OutputStream out) throws IOException {
+        String range = incoming.getFirst(HttpHeaders.RANGE);
+        String ifRange = incoming.getFirst(HttpHeaders.IF_RANGE);
+        String key = cacheEnabled ? cacheKey : null;
+
+        if (key != null) {
+            Path cached = imageCache.get(key);
+            if (cached != null) {
+                serveFile(cached, range, ifRange, response, out);
+                return;
+            }
+        } else {
+            // Without a cache fill the upstream may cut the range itself; a fill needs the whole image.
+            if (range != null) {
+                request.header(HttpHeaders.RANGE, range);
+            }
+            if (ifRange != null) {
+                request.header(HttpHeaders.IF_RANGE, ifRange);
+            }
+        }
+
+        nasaClient.stream(request, priority, raw -> {
+            try {
+                relay(raw, key, range, ifRange, response, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /** Pulls an image into the cache without a client waiting for it. */
+    public void prefetch(HttpRequest<?> request, Priority priority, String cacheKey) {
+        if (!cacheEnabled || imageCache.get(cacheKey) != null) {
+            return;
+        }
+        try {
+            nasaClient.stream(request, priority, raw -> {
+                if (raw.getStatus() != HttpStatus.OK.value()) {
+                    return;
+                }
+                ImageDiskCache.Fill fill = imageCache.begin(cacheKey, ImageDiskCache.extension(raw.getContentType()));
+                try (InputStream in = raw.getContent()) {
+                    pump(in, OutputStream.nullOutputStream(), 0, 0, fill);
+                    fill.commit();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    fill.abort();
+                }
+            });
+        } catch (RuntimeException e) {
+            log.debug("Prefetch of {} failed", cacheKey, e);
+        }
+    }
+
+    private void relay(RawResponse raw, String key, String range, String ifRange,
+                       HttpServletResponse response, OutputStream out) throws IOException {
+        long length = contentLength(raw);
+        for (String name : FORWARDED_HEADERS) {
+            String value = raw.getHeaders().getFirst(name);
+            if (value != null && !value.isEmpty()) {
+                response.setHeader(name, value);
+            }
+        }
+
+        int status = raw.getStatus();
+        long[] window = {0, length};
+        if (status == HttpStatus.OK.value() && length >= 0) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (ifRangeMatches(ifRange, raw.getHeaders().getFirst(HttpHeaders.ETAG),
+                    raw.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED))) {
+                window = window(range, length, response);
+                if (window == null) {
+                    raw.getContent().close();
+                    return;
+                }
+                status = window[1] == length ? status : HttpStatus.PARTIAL_CONTENT.value();
+            }
+        }
+
+        response.setStatus(status);
+        if (window[1] >= 0) {
+            response.setContentLengthLong(window[1]);
+        }
+
+        ImageDiskCache.Fill fill = key != null && raw.getStatus() == HttpStatus.OK.value()
+                ? imageCache.begin(key, ImageDiskCache.extension(raw.getContentType()))
+                : null;
+        try (InputStream in = raw.getContent()) {
+            pump(in, out, window[0], window[1], fill);
+            if (fill != null) {
+                fill.commit();
+            }
+        } finally {
+            if (fill != null) {
+                fill.abort();
+            }
+        }
+    }
+
+    private void serveFile(Path file, String range, String ifRange,
+                           HttpServletResponse response, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            String etag = "\"" + file.getFileName() + "\"";
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            response.setHeader(HttpHeaders.CONTENT_TYPE, ImageDiskCache.contentType(file));
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            long[] window = {0, length};
+            if (ifRangeMatches(ifRange, etag, null)) {
+                window = window(range, length, response);
+                if (window == null) {
+                    return;
+                }
+            }
+            response.setStatus(window[1] == length ? HttpStatus.OK.value() : HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentLengthLong(window[1]);
+
+            // the servlet stream is no file descriptor, so this is a buffered copy rather than a kernel sendfile
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = window[0];
+            long left = window[1];
+            while (left > 0) {
+                long sent = channel.transferTo(position, left, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                left -= sent;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Copies the {@code count} bytes starting at {@code start} to the client. While a cache fill is running
+     * the whole image is read and teed into it; otherwise reading stops at the end of the window.
+     */
+    private void pump(InputStream in, OutputStream out, long start, long count,
+                      ImageDiskCache.Fill fill) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        long end = count < 0 ? Long.MAX_VALUE : start + count;
+        long position = 0;
+        while (fill != null || position < end) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            if (fill != null) {
+                fill.write(buffer, 0, read);
+            }
+            long from = Math.max(start, position);
+            long to = Math.min(end, position + read);
+            if (from < to) {
+                out.write(buffer, (int) (from - position), (int) (to - from));
+            }
+            position += read;
+        }
+        out.flush();
+    }
+
+    /**
+     * The {offset, length} of the requested single byte range, or of the whole body when there is none.
+     * Answers 416 and returns null when the range cannot be satisfied.
+     */
+    private static long[] window(String range, long length, HttpServletResponse response) {
+        HttpRange requested = singleRange(range);
+        if (requested == null) {
+            return new long[]{0, length};
+        }
+        try {
+            long start = requested.getRangeStart(length);
+            long end = requested.getRangeEnd(length);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            return new long[]{start, end - start + 1};
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+            return null;
+        }
+    }
+
+    private static HttpRange singleRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** If-Range holds either a strong entity tag or a date; the range only applies while it still matches. */
+    private static boolean ifRangeMatches(String ifRange, String etag, String lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        return ifRange.equals(ifRange.startsWith("\"") ? etag : lastModified);
+    }
+
+    private static long contentLength(RawResponse raw) {
+        String value = raw.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH);
+        try {
+            return value == null || value.isEmpty() ? -1 : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
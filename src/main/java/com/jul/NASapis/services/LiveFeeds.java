@@ -0,0 +1,270 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.cache.LruCache;
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.json.ModelReaders;
+import kong.unirest.GetRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Server-sent event streams of new DONKI notifications and newly opened EONET events.
+ * Each feed has a single poller, shared by all of its subscribers, that only runs while someone is subscribed.
+ * Items are recognised by their ID, so every subscriber is sent each item once, whatever the overlap
+ * between polls. The first poll after a feed gains subscribers only records what is already there.
+ * Events are handed to each subscriber's own send queue, drained off the poller thread by a fixed pool of
+ * {@code sendThreads}, so a slow client only delays itself. A subscriber is dropped when more than
+ * {@code maxBacklog} events pile up for it, when its send fails or has been stuck for longer than a poll
+ * interval, or when the pool is saturated.
+ */
+@Slf4j
+@Service
+public class LiveFeeds {
+    /** Subscribers with events waiting for a send thread; each has at most one task queued. */
+    static final int SEND_QUEUE = 10000;
+
+    private final NASAClient nasaClient;
+    private final long subscriberTimeout;
+    private final int maxBacklog;
+    private final long stuckAfter;
+    private final Feed notifications;
+    private final Feed openEvents;
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-feeds");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ThreadPoolExecutor sender;
+
+    public LiveFeeds(NASAClient nasaClient, ApplicationPropertiesConfig config) {
+        ApplicationPropertiesConfig.Live live = config.getLive();
+        this.nasaClient = nasaClient;
+        this.subscriberTimeout = live.getSubscriberTimeout().toMillis();
+        this.maxBacklog = live.getMaxBacklog();
+        this.stuckAfter = live.getPollInterval().toMillis();
+        int sendThreads = Math.max(1, live.getSendThreads());
+        this.sender = new ThreadPoolExecutor(sendThreads, sendThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(SEND_QUEUE), runnable -> {
+                    Thread thread = new Thread(runnable, "live-feeds-send");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        sender.allowCoreThreadTimeOut(true);
+        this.notifications = new Feed("notification", null, "messageID", live.getRememberedIds(),
+                () -> nasaClient.get(Host.API, "/DONKI/notifications")
+                        .header("content-type", "application/json")
+                        .queryString("startDate", LocalDate.now().minusDays(1).toString())
+                        .queryString("endDate", LocalDate.now().toString())
+                        .queryString("type", "all"));
+        this.openEvents = new Feed("event", "events", "id", live.getRememberedIds(),
+                () -> nasaClient.get(Host.EONET, "/api/v3/events")
+                        .header("content-type", "application/json")
+                        .queryString("status", "open"));
+
+        long interval = live.getPollInterval().toMillis();
+        poller.scheduleWithFixedDelay(() -> {
+            notifications.poll();
+            openEvents.poll();
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter notifications() {
+        return notifications.subscribe();
+    }
+
+    public SseEmitter openEvents() {
+        return openEvents.subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        sender.shutdownNow();
+        notifications.subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        openEvents.subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private class Feed {
+        final String eventName;
+        final String listField;
+        final String idField;
+        final Supplier<GetRequest> request;
+        final LruCache<String, Boolean> seen;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        final AtomicBoolean polling = new AtomicBoolean();
+        volatile boolean seeded;
+
+        Feed(String eventName, String listField, String idField, int rememberedIds, Supplier<GetRequest> request) {
+            this.eventName = eventName;
+            this.listField = listField;
+            this.idField = idField;
+            this.request = request;
+            this.seen = new LruCache<>(rememberedIds);
+        }
+
+        SseEmitter subscribe() {
+            SseEmitter emitter = new SseEmitter(subscriberTimeout);
+            Subscriber subscriber = new Subscriber(this, emitter);
+            emitter.onCompletion(() -> subscribers.remove(subscriber));
+            emitter.onTimeout(() -> subscribers.remove(subscriber));
+            emitter.onError(error -> subscribers.remove(subscriber));
+            subscribers.add(subscriber);
+            if (!seeded) {
+                poller.execute(this::poll);
+            }
+            return emitter;
+        }
+
+        void poll() {
+            if (subscribers.isEmpty()) {
+                seeded = false;
+                return;
+            }
+            if (!polling.compareAndSet(false, true)) {
+                return;
+            }
+            nasaClient.bytes(request.get(), Priority.LOW).whenComplete((body, error) -> {
+                polling.set(false);
+                if (error != null) {
+                    log.debug("Polling the {} feed failed: {}", eventName, error.toString());
+                } else {
+                    publish(ModelReaders.items(body, listField, idField));
+                }
+            });
+        }
+
+        private void publish(Map<String, String> items) {
+            List<Map.Entry<String, String>> fresh = new ArrayList<>();
+            synchronized (this) {
+                for (Map.Entry<String, String> item : items.entrySet()) {
+                    if (seen.get(item.getKey()) == null) {
+                        seen.put(item.getKey(), Boolean.TRUE);
+                        fresh.add(item);
+                    }
+                }
+                if (!seeded) {
+                    seeded = true;
+                    return;
+                }
+            }
+            // builders are consumed by the send, so every subscriber gets its own
+            List<Supplier<SseEmitter.SseEventBuilder>> events = new ArrayList<>();
+            if (fresh.isEmpty()) {
+                events.add(() -> SseEmitter.event().comment("keep-alive"));
+            }
+            for (Map.Entry<String, String> item : fresh) {
+                events.add(() -> SseEmitter.event()
+                        .id(item.getKey())
+                        .name(eventName)
+                        .data(item.getValue(), MediaType.APPLICATION_JSON));
+            }
+            subscribers.forEach(subscriber -> subscriber.offer(events));
+        }
+    }
+
+    /** One stream and the events waiting to be written to it, sent in order by at most one thread at a time. */
+    private class Subscriber {
+        final Feed feed;
+        final SseEmitter emitter;
+        final Queue<Supplier<SseEmitter.SseEventBuilder>> backlog = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean sending = new AtomicBoolean();
+        /** When the send in progress started, 0 while none is. */
+        volatile long sendStarted;
+        volatile Exception dropReason;
+
+        Subscriber(Feed feed, SseEmitter emitter) {
+            this.feed = feed;
+            this.emitter = emitter;
+        }
+
+        void offer(List<Supplier<SseEmitter.SseEventBuilder>> events) {
+            if (dropReason != null) {
+                return;
+            }
+            long started = sendStarted;
+            if (started != 0 && System.currentTimeMillis() - started > stuckAfter) {
+                // the blocked write itself is only released by the connector's timeout
+                drop(new IllegalStateException("Subscriber send stuck for more than " + stuckAfter + " ms"));
+                return;
+            }
+            if (queued.addAndGet(events.size()) > maxBacklog) {
+                drop(new IllegalStateException("Subscriber fell more than " + maxBacklog + " events behind"));
+                return;
+            }
+            backlog.addAll(events);
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    sending.set(false);
+                    drop(e);
+                }
+            }
+        }
+
+        private void send() {
+            try {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while (dropReason == null && (event = backlog.poll()) != null) {
+                    queued.decrementAndGet();
+                    sendStarted = System.currentTimeMillis();
+                    emitter.send(event.get());
+                    sendStarted = 0;
+                }
+            } catch (IOException | IllegalStateException e) {
+                drop(e);
+            } finally {
+                sendStarted = 0;
+            }
+            sending.set(false);
+            // an offer or a drop may have come in after the loop but before the flag was cleared
+            if ((dropReason != null || !backlog.isEmpty()) && sending.compareAndSet(false, true)) {
+                if (dropReason != null) {
+                    emitter.completeWithError(dropReason);
+                } else {
+                    send();
+                }
+            }
+        }
+
+        /**
+         * Unsubscribes and closes the stream. The emitter is locked for as long as a send blocks, so while one is
+         * in progress the sending thread closes it once that send returns.
+         */
+        private void drop(Exception reason) {
+            synchronized (this) {
+                if (dropReason != null) {
+                    return;
+                }
+                dropReason = reason;
+            }
+            feed.subscribers.remove(this);
+            backlog.clear();
+            if (sending.compareAndSet(false, true)) {
+                emitter.completeWithError(reason);
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import kong.unirest.GetRequest;
+import kong.unirest.HttpRequest;
+import kong.unirest.HttpResponse;
+import kong.unirest.RawResponse;
+import kong.unirest.Unirest;
+import kong.unirest.UnirestInstance;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Pooled access to the NASA upstreams.
+ * Every host (api.nasa.gov, epic.gsfc.nasa.gov, eonet.sci.gsfc.nasa.gov, ...) gets its own Unirest instance,
+ * so a slow host can only exhaust its own connection pool.
+ * Requests are executed on Unirest's async client, so no servlet thread waits on NASA,
+ * identical concurrent requests share a single upstream call, every call goes through the {@link HostGuard}
+ * (bulkhead, circuit breaker, hedging) of its host, and calls against the api.nasa.gov
+ * quota go through the {@link RateLimitBudget} and are signed with a key from the {@link ApiKeyPool}.
+ * Callers name the production URLs; {@code nasa.api.upstream} can move each host to another base URL
+ * (a stand-in server, a mirror), and the moved host keeps its name for pooling, guarding and metrics.
+ */
+@Component
+public class NASAClient {
+    static final String API_HOST = Host.API.getName();
+
+    private final ApplicationPropertiesConfig.Client settings;
+    private final ApplicationPropertiesConfig.Resilience resilience;
+    private final RateLimitBudget budget;
+    private final ApiKeyPool keys;
+    private final MeterRegistry registry;
+    private final Map<String, UnirestInstance> instances = new ConcurrentHashMap<>();
+    private final Map<String, HostGuard> guards = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService hedger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "nasa-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    /** Production origin to configured base URL, and configured base URL to the host it stands for. */
+    private final Map<String, String> baseUrls = new LinkedHashMap<>();
+    private final Map<String, String> hosts = new LinkedHashMap<>();
+
+    public NASAClient(ApplicationPropertiesConfig config, RateLimitBudget budget, ApiKeyPool keys, MeterRegistry registry) {
+        this.settings = config.getClient();
+        this.resilience = config.getResilience();
+        this.budget = budget;
+        this.keys = keys;
+        this.registry = registry;
+        ApplicationPropertiesConfig.Upstream upstream = config.getUpstream();
+        relocate(Host.API, upstream.getApi());
+        relocate(Host.EPIC, upstream.getEpic());
+        relocate(Host.EONET, upstream.getEonet());
+    }
+
+    private void relocate(Host host, String baseUrl) {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        baseUrls.put(host.getOrigin(), base);
+        hosts.put(base, host.getName());
+    }
+
+    /** GET of {@code path} (starting with a slash) on {@code host}, wherever that host is configured to be. */
+    public GetRequest get(Host host, String path) {
+        return get(host.getOrigin() + path);
+    }
+
+    public GetRequest get(String url) {
+        String resolved = resolve(url);
+        return instanceFor(hostOf(resolved)).get(resolved);
+    }
+
+    /** {@code url} with a relocated production origin replaced by its configured base URL. */
+    private String resolve(String url) {
+        for (Map.Entry<String, String> entry : baseUrls.entrySet()) {
+            if (url.startsWith(entry.getKey() + "/") || url.equals(entry.getKey())) {
+                return entry.getValue() + url.substring(entry.getKey().length());
+            }
+        }
+        return url;
+    }
+
+    /** The NASA host a resolved URL stands for. */
+    private String hostOf(String url) {
+        for (Map.Entry<String, String> entry : hosts.entrySet()) {
+            if (url.startsWith(entry.getKey() + "/") || url.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return URI.create(url).getHost();
+    }
+
+    public CompletableFuture<byte[]> bytes(HttpRequest<?> request) {
+        return bytes(request, Priority.NORMAL);
+    }
+
+    public CompletableFuture<byte[]> bytes(HttpRequest<?> request, Priority priority) {
+        return coalesce(normalize(request.getUrl()), () -> send(request, priority));
+    }
+
+    /**
+     * Blocking call that hands the still open upstream response to {@code consumer}, for bodies that are
+     * streamed to the client instead of buffered. Such calls are never coalesced.
+     */
+    public void stream(HttpRequest<?> request, Priority priority, Consumer<RawResponse> consumer) {
+        String host = hostOf(request.getUrl());
+        HostGuard guard = guardFor(host);
+        // admitted first, so a call the breaker or bulkhead turns away never spends budget
+        guard.enter();
+        if (API_HOST.equals(host)) {
+            String key;
+            try {
+                awaitBudget(priority);
+                key = keys.acquire();
+            } catch (RuntimeException e) {
+                guard.abandon();
+                throw e;
+            }
+            request.queryString("api_key", key);
+            Consumer<RawResponse> delegate = consumer;
+            consumer = raw -> {
+                budget.record(key, raw.getStatus(), raw.getHeaders());
+                delegate.accept(raw);
+            };
+        }
+
+        long started = System.nanoTime();
+        int[] status = {0};
+        Consumer<RawResponse> guarded = consumer;
+        try {
+            request.thenConsume(raw -> {
+                status[0] = raw.getStatus();
+                guarded.accept(raw);
+            });
+        } finally {
+            guard.leave(status[0], System.nanoTime() - started, -1);
+        }
+    }
+
+    /**
+     * Waits for a token at most as long as the request itself may take, so a servlet thread streaming a body is
+     * never parked behind an exhausted budget; a wait that times out gives its place in the queue back.
+     */
+    private void awaitBudget(Priority priority) {
+        CompletableFuture<Void> token = budget.submit(priority, () -> CompletableFuture.completedFuture(null));
+        try {
+            token.get(settings.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            token.cancel(false);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "NASA API budget exhausted, try again later");
+        } catch (InterruptedException e) {
+            token.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for NASA API budget");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Calls off api.nasa.gov may be hedged; api.nasa.gov calls never are, as a hedge would spend
+     * a second request of the key budget.
+     */
+    private CompletableFuture<byte[]> send(HttpRequest<?> request, Priority priority) {
+        String host = hostOf(request.getUrl());
+        HostGuard guard = guardFor(host);
+        if (!API_HOST.equals(host)) {
+            return guard.call(request::asBytesAsync, resilience.isHedgeEnabled()).thenApply(NASAClient::body);
+        }
+        return budget.submit(priority, () -> {
+            String key = keys.acquire();
+            request.queryString("api_key", key);
+            return guard.call(request::asBytesAsync, false).thenApply(response -> {
+                budget.record(key, response.getStatus(), response.getHeaders());
+                return body(response);
+            });
+        });
+    }
+
+    /** Error answers fail the call, so coalesced callers and caches never mistake them for data. */
+    private static byte[] body(HttpResponse<byte[]> response) {
+        if (!response.isSuccess()) {
+            throw new UpstreamException(response.getStatus(), response.getHeaders().getFirst("Content-Type"),
+                    response.getBody());
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Single-flight: the first caller for a key performs the call, everyone arriving while it is
+     * in flight gets the same result. Callers receive copies so none of them can cancel the shared call.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> coalesce(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            registry.counter("nasa.upstream.coalesced").increment();
+            return existing.copy();
+        }
+
+        CompletableFuture<T> upstream;
+        try {
+            upstream = call.get();
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((value, error) -> {
+            inFlight.remove(key, shared);
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(value);
+            }
+        });
+        return shared.copy();
+    }
+
+    /** Upstream URL with its query parameters sorted and the api_key removed, so equivalent requests match. */
+    public static String normalize(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        String params = Arrays.stream(url.substring(query + 1).split("&"))
+                .filter(param -> !param.isEmpty() && !param.startsWith("api_key="))
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return url.substring(0, query) + "?" + params;
+    }
+
+    private HostGuard guardFor(String host) {
+        return guards.computeIfAbsent(host, name -> new HostGuard(name, resilience, hedger, registry));
+    }
+
+    private UnirestInstance instanceFor(String host) {
+        return instances.computeIfAbsent(host, this::spawn);
+    }
+
+    private UnirestInstance spawn(String host) {
+        int maxConnections = settings.getMaxConnectionsPerHost().getOrDefault(host, settings.getMaxConnections());
+
+        UnirestInstance instance = Unirest.spawnInstance();
+        instance.config()
+                .connectTimeout((int) settings.getConnectTimeout().toMillis())
+                .socketTimeout((int) settings.getReadTimeout().toMillis())
+                .concurrency(maxConnections, maxConnections)
+                .connectionTTL(settings.getKeepAlive())
+                .requestCompression(settings.isGzip());
+        return instance;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedger.shutdownNow();
+        instances.values().forEach(UnirestInstance::shutDown);
+        instances.clear();
+    }
+}
@@ -0,0 +1,134 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.cache.LruCache;
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import com.jul.NASapis.json.ModelReaders;
+import com.jul.NASapis.models.NEOWSModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import kong.unirest.GetRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * NeoWs feed for arbitrary date ranges.
+ * The upstream feed answers at most 7 days per call, so a range is split into 7-day chunks that are fetched
+ * in parallel (a bounded number at a time) and merged back in date order. Days that are already over never
+ * change, so their objects are cached and only the missing days are requested.
+ */
+@Service
+public class NeoFeedService {
+    static final int CHUNK_DAYS = 7;
+
+    private final NASAClient nasaClient;
+    private final LruCache<String, List<NEOWSModel>> pastDays;
+    private final int parallelChunks;
+    private final int maxRangeDays;
+
+    public NeoFeedService(NASAClient nasaClient, ApplicationPropertiesConfig config, MeterRegistry registry) {
+        ApplicationPropertiesConfig.Neo neo = config.getNeo();
+        this.nasaClient = nasaClient;
+        this.pastDays = new LruCache<String, List<NEOWSModel>>(neo.getCacheSize()).monitor(registry, "neo");
+        this.parallelChunks = Math.max(1, neo.getParallelChunks());
+        this.maxRangeDays = neo.getMaxRangeDays();
+    }
+
+    public CompletableFuture<List<NEOWSModel>> feed(LocalDate start, LocalDate end, boolean detailed) {
+        if (end.isBefore(start)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "end_date is before start_date");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= maxRangeDays) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Date range is limited to " + maxRangeDays + " days");
+        }
+
+        Map<LocalDate, List<NEOWSModel>> days = new TreeMap<>();
+        List<LocalDate[]> chunks = new ArrayList<>();
+        LocalDate chunkStart = null;
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            List<NEOWSModel> cached = pastDays.get(key(day, detailed));
+            if (cached != null) {
+                days.put(day, cached);
+                if (chunkStart != null) {
+                    chunks.add(new LocalDate[]{chunkStart, day.minusDays(1)});
+                    chunkStart = null;
+                }
+                continue;
+            }
+            if (chunkStart == null) {
+                chunkStart = day;
+            } else if (ChronoUnit.DAYS.between(chunkStart, day) == CHUNK_DAYS) {
+                chunks.add(new LocalDate[]{chunkStart, day.minusDays(1)});
+                chunkStart = day;
+            }
+        }
+        if (chunkStart != null) {
+            chunks.add(new LocalDate[]{chunkStart, end});
+        }
+
+        return fetchAll(chunks, detailed).thenApply(fetched -> {
+            days.putAll(fetched);
+            List<NEOWSModel> list = new ArrayList<>();
+            days.values().forEach(list::addAll);
+            return list;
+        });
+    }
+
+    /** Runs at most {@code parallelChunks} chunk calls at a time; each finished call starts the next queued chunk. */
+    private CompletableFuture<Map<LocalDate, List<NEOWSModel>>> fetchAll(List<LocalDate[]> chunks, boolean detailed) {
+        Map<LocalDate, List<NEOWSModel>> fetched = new TreeMap<>();
+        ConcurrentLinkedQueue<LocalDate[]> pending = new ConcurrentLinkedQueue<>(chunks);
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelChunks, chunks.size()); i++) {
+            workers.add(next(pending, detailed, fetched));
+        }
+        return CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).thenApply(done -> fetched);
+    }
+
+    private CompletableFuture<Void> next(ConcurrentLinkedQueue<LocalDate[]> pending, boolean detailed,
+                                         Map<LocalDate, List<NEOWSModel>> fetched) {
+        LocalDate[] chunk = pending.poll();
+        if (chunk == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return fetchChunk(chunk[0], chunk[1], detailed)
+                .thenCompose(days -> {
+                    synchronized (fetched) {
+                        fetched.putAll(days);
+                    }
+                    return next(pending, detailed, fetched);
+                });
+    }
+
+    private CompletableFuture<Map<LocalDate, List<NEOWSModel>>> fetchChunk(LocalDate start, LocalDate end, boolean detailed) {
+        GetRequest request = nasaClient.get(Host.API, "/neo/rest/v1/feed")
+                .header("content-type", "application/json")
+                .queryString("start_date", start.toString())
+                .queryString("end_date", end.toString())
+                .queryString("detailed", detailed);
+
+        return nasaClient.bytes(request, Priority.HIGH).thenApply(body -> {
+            Map<LocalDate, List<NEOWSModel>> days = ModelReaders.neoFeed(body);
+            LocalDate today = LocalDate.now();
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                List<NEOWSModel> list = days.computeIfAbsent(day, missing -> new ArrayList<>());
+                if (day.isBefore(today)) {
+                    pastDays.put(key(day, detailed), list);
+                }
+            }
+            return days;
+        });
+    }
+
+    private static String key(LocalDate day, boolean detailed) {
+        return day + "_" + detailed;
+    }
+}
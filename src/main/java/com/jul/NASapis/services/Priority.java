@@ -0,0 +1,21 @@
+package com.jul.NASapis.services;
+
+/**
+ * How important an upstream call is when the API key budget runs low.
+ * The reserve share is the fraction of the low-priority reserve a call must leave untouched.
+ */
+public enum Priority {
+    HIGH(0),
+    NORMAL(0.5),
+    LOW(1);
+
+    private final double reserveShare;
+
+    Priority(double reserveShare) {
+        this.reserveShare = reserveShare;
+    }
+
+    public double getReserveShare() {
+        return reserveShare;
+    }
+}
@@ -0,0 +1,218 @@
+package com.jul.NASapis.services;
+
+import com.jul.NASapis.config.ApplicationPropertiesConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import kong.unirest.Headers;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Token bucket in front of the api.nasa.gov hourly quota of every key in the {@link ApiKeyPool}.
+ * The bucket refills at the pooled hourly limit and is clamped to the X-RateLimit-Remaining NASA reports,
+ * so bursts are spread out instead of burning the key. Calls wait in a priority queue; low priority
+ * calls are held back while the bucket is inside the reserve so APOD and NEO feed keep working longest.
+ * A call still waiting after {@code maxWait} fails with 429, and one whose future was cancelled is dropped,
+ * neither spending a token.
+ */
+@Component
+public class RateLimitBudget {
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final PriorityQueue<Pending<?>> queue = new PriorityQueue<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "nasa-rate-limit");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ApiKeyPool keys;
+    private final double reserve;
+    private final int maxQueued;
+    private final long maxWait;
+
+    private double tokens;
+    private long lastRefill = System.currentTimeMillis();
+    private long sequence;
+    private boolean drainScheduled;
+
+    public RateLimitBudget(ApplicationPropertiesConfig config, ApiKeyPool keys, MeterRegistry registry) {
+        ApplicationPropertiesConfig.RateLimit settings = config.getRateLimit();
+        this.keys = keys;
+        this.tokens = keys.capacity();
+        this.reserve = settings.getLowPriorityReserve();
+        this.maxQueued = settings.getMaxQueued();
+        this.maxWait = settings.getMaxWait().toMillis();
+
+        Gauge.builder("nasa.api.ratelimit.remaining", keys, ApiKeyPool::remaining)
+                .description("Budget left across all api.nasa.gov keys, from X-RateLimit-Remaining")
+                .register(registry);
+        Gauge.builder("nasa.api.ratelimit.tokens", this, RateLimitBudget::availableTokens)
+                .description("Calls the local token bucket would currently let through")
+                .register(registry);
+        Gauge.builder("nasa.api.ratelimit.queued", this, RateLimitBudget::queued)
+                .description("Calls waiting for budget")
+                .register(registry);
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> call) {
+        Pending<T> pending;
+        List<Pending<?>> expired = new ArrayList<>();
+        synchronized (this) {
+            if (keys.capacity() == 0) {
+                return CompletableFuture.failedFuture(
+                        new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "No NASA API key is currently usable"));
+            }
+            expire(System.currentTimeMillis(), expired);
+            if (queue.size() >= maxQueued) {
+                expired.forEach(Pending::expire);
+                return CompletableFuture.failedFuture(
+                        new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "NASA API budget exhausted, try again later"));
+            }
+            pending = new Pending<>(priority, sequence++, System.currentTimeMillis() + maxWait, call);
+            queue.add(pending);
+        }
+        expired.forEach(Pending::expire);
+        drain();
+        return pending.result;
+    }
+
+    /** Feeds the quota headers NASA attaches to every api.nasa.gov response back into the bucket. */
+    public void record(String key, int status, Headers headers) {
+        keys.record(key, status, headers);
+        double remaining = keys.remaining();
+        synchronized (this) {
+            tokens = Math.min(tokens, remaining);
+        }
+    }
+
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<Pending<?>> ready = new ArrayList<>();
+        List<Pending<?>> expired = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            long nextDeadline = expire(lastRefill, expired);
+            Pending<?> head;
+            while ((head = queue.peek()) != null && tokens >= required(head.priority)) {
+                queue.poll();
+                if (!head.result.isDone()) {
+                    tokens -= 1;
+                    ready.add(head);
+                }
+            }
+            if (head != null && !drainScheduled) {
+                drainScheduled = true;
+                double perMilli = Math.max(keys.capacity(), 1) / HOUR_MILLIS;
+                long wait = (long) Math.ceil((required(head.priority) - tokens) / perMilli);
+                wait = Math.min(wait, nextDeadline - lastRefill);
+                scheduler.schedule(() -> {
+                    synchronized (this) {
+                        drainScheduled = false;
+                    }
+                    drain();
+                }, Math.max(wait, 1), TimeUnit.MILLISECONDS);
+            }
+        }
+        expired.forEach(Pending::expire);
+        ready.forEach(Pending::run);
+    }
+
+    /**
+     * Takes the calls that waited past their deadline out of the queue into {@code expired}, to be failed once
+     * the lock is released, and forgets the cancelled ones.
+     *
+     * @return the earliest deadline of the calls still waiting
+     */
+    private long expire(long now, List<Pending<?>> expired) {
+        long nextDeadline = Long.MAX_VALUE;
+        for (Iterator<Pending<?>> it = queue.iterator(); it.hasNext(); ) {
+            Pending<?> pending = it.next();
+            if (pending.result.isDone()) {
+                it.remove();
+            } else if (pending.deadline <= now) {
+                it.remove();
+                expired.add(pending);
+            } else {
+                nextDeadline = Math.min(nextDeadline, pending.deadline);
+            }
+        }
+        return nextDeadline;
+    }
+
+    private double required(Priority priority) {
+        double capacity = keys.capacity();
+        return Math.max(1, Math.min(capacity, 1 + capacity * reserve * priority.getReserveShare()));
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        double capacity = keys.capacity();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * capacity / HOUR_MILLIS);
+        lastRefill = now;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private static class Pending<T> implements Comparable<Pending<?>> {
+        final Priority priority;
+        final long sequence;
+        final long deadline;
+        final Supplier<CompletableFuture<T>> call;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Pending(Priority priority, long sequence, long deadline, Supplier<CompletableFuture<T>> call) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.deadline = deadline;
+            this.call = call;
+        }
+
+        void run() {
+            try {
+                call.get().whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        void expire() {
+            result.completeExceptionally(
+                    new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Timed out waiting for NASA API budget"));
+        }
+
+        @Override
+        public int compareTo(Pending<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.jul.NASapis.services;
+
+import lombok.Getter;
+
+/** Non-2xx answer from a NASA upstream, carrying the upstream body so it can be relayed unchanged. */
+@Getter
+public class UpstreamException extends RuntimeException {
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+
+    public UpstreamException(int status, String contentType, byte[] body) {
+        super("Upstream answered " + status);
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body != null ? body : new byte[0];
+    }
+}